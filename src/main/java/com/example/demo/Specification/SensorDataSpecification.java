@@ -0,0 +1,68 @@
+package com.example.demo.Specification;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.example.demo.dto.KeysetCursor;
+import com.example.demo.model.SensorData;
+import com.example.demo.model.SensorType;
+
+
+public class SensorDataSpecification {
+
+    private static Specification<SensorData> busIdEquals(Long busId) {
+        return (root, query, cB) -> busId == null ? null : cB.equal(root.get("bus").get("id"), busId);
+    }
+
+    private static Specification<SensorData> typeEquals(SensorType type) {
+        return (root, query, cB) -> type == null ? null : cB.equal(root.get("sensorType"), type);
+    }
+
+    private static Specification<SensorData> anomalyEquals(Boolean anomaly) {
+        return (root, query, cB) -> anomaly == null ? null : cB.equal(root.get("anomaly"), anomaly);
+    }
+
+    // Период [from, to): любая из границ может быть не задана
+    private static Specification<SensorData> timestampBetween(LocalDateTime from, LocalDateTime to) {
+        return (root, query, cB) -> {
+            if (from == null && to == null) {
+                return null;
+            } else if (from != null && to != null) {
+                return cB.and(
+                    cB.greaterThanOrEqualTo(root.get("timestamp"), from),
+                    cB.lessThan(root.get("timestamp"), to));
+            } else if (from != null) {
+                return cB.greaterThanOrEqualTo(root.get("timestamp"), from);
+            } else {
+                return cB.lessThan(root.get("timestamp"), to);
+            }
+        };
+    }
+
+    // Записи после курсора в порядке (timestamp, id) по убыванию
+    private static Specification<SensorData> after(KeysetCursor cursor) {
+        return (root, query, cB) -> {
+            if (cursor == null || cursor.isFirst()) {
+                return null;
+            }
+            return cB.or(
+                cB.lessThan(root.get("timestamp"), cursor.timestamp()),
+                cB.and(
+                    cB.equal(root.get("timestamp"), cursor.timestamp()),
+                    cB.lessThan(root.get("id"), cursor.id())));
+        };
+    }
+
+
+    public static Specification<SensorData> filter(Long busId, SensorType type, LocalDateTime from,
+            LocalDateTime to, Boolean anomaly, KeysetCursor cursor) {
+        return Specification.allOf(
+            busIdEquals(busId),
+            typeEquals(type),
+            timestampBetween(from, to),
+            anomalyEquals(anomaly),
+            after(cursor)
+        );
+    }
+}
@@ -1,32 +1,63 @@
 package com.example.demo.config;
 
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCache;
-import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
-import java.util.Arrays;
+import com.example.demo.dto.KeysetPage;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
-    
+
+    private static final List<String> CACHE_NAMES = List.of(
+        "products", "product", "buses", "stops", "routes", "passengers", "passengerPages", "passengerPeriods",
+        "predictions");
+
+    private static final String DEFAULT_SPEC = "maximumSize=1000,expireAfterWrite=10m";
+
+    /**
+     * Кэши Caffeine с ограничением размера и TTL.
+     * Политика задается строкой CaffeineSpec: cache.specs.<имя>, иначе cache.default-spec.
+     * Статистика включена всегда и публикуется в метриках cache.*.
+     */
     @Bean
-    CacheManager cacheManager() {
-        SimpleCacheManager simpleCacheManager = new SimpleCacheManager();
-        
-        simpleCacheManager.setCaches(Arrays.asList(
-            new ConcurrentMapCache("products"), 
-            new ConcurrentMapCache("product"),
-            new ConcurrentMapCache("buses"),
-            new ConcurrentMapCache("stops"),
-            new ConcurrentMapCache("routes"),
-            new ConcurrentMapCache("passengers"),
-            new ConcurrentMapCache("predictions")
-        ));
-        
-        return simpleCacheManager;
+    CacheManager cacheManager(Environment environment) {
+        Binder binder = Binder.get(environment);
+        String defaultSpec = binder.bind("cache.default-spec", String.class).orElse(DEFAULT_SPEC);
+        Map<String, String> specs = binder.bind("cache.specs",
+            Bindable.mapOf(String.class, String.class)).orElse(Map.of());
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(caffeine(defaultSpec));
+        for (String name : CACHE_NAMES) {
+            cacheManager.registerCustomCache(name, caffeine(specs.getOrDefault(name, defaultSpec)).build());
+        }
+
+        return cacheManager;
+    }
+
+    private static Caffeine<Object, Object> caffeine(String spec) {
+        Caffeine<Object, Object> builder = Caffeine.from(spec).recordStats();
+        if (spec.contains("maximumWeight")) {
+            // Вес списка (страницы) - число элементов, чтобы большие выборки вытеснялись раньше
+            builder.weigher((Object key, Object value) -> {
+                if (value instanceof KeysetPage<?> page) {
+                    return page.items().size() + 1;
+                }
+                return value instanceof Collection<?> collection ? collection.size() + 1 : 1;
+            });
+        }
+        return builder;
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import java.util.Collections;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -20,6 +21,10 @@ import org.springframework.web.cors.CorsConfiguration;
 
 import com.example.demo.jwt.JwtAuthEntryPoint;
 import com.example.demo.jwt.JwtAuthFilter;
+import com.example.demo.jwt.RoleAuthorityExpressionHandler;
+import com.example.demo.jwt.RoleAuthorityRegistry;
+
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 
 @Configuration
@@ -60,10 +65,15 @@ public class SecurityConfig {
             config.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
             config.setAllowedHeaders(Arrays.asList("*"));
             config.setAllowCredentials(true);
+            // Курсор следующей страницы списков пассажиропотока
+            config.setExposedHeaders(Arrays.asList("X-Next-Cursor"));
             return config;
         }));
         
         http.authorizeHttpRequests(authz -> authz
+            // Асинхронные ответы (потоковые выгрузки) уже прошли проверку в исходном запросе
+            .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+            
             // Разрешаем ВСЕ статические ресурсы и HTML
             .requestMatchers(
                 "/",
@@ -112,6 +122,12 @@ public class SecurityConfig {
         return http.build();
     }
 
+    // Проверки hasAuthority в @PreAuthorize идут по битовым наборам прав ролей
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler(RoleAuthorityRegistry registry) {
+        return new RoleAuthorityExpressionHandler(registry);
+    }
+
     @Bean
     static PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
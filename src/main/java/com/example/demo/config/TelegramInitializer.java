@@ -4,7 +4,7 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
-import com.example.demo.service.TelegramBotService;
+import com.example.demo.service.NotificationSink;
 
 import lombok.RequiredArgsConstructor;
 
@@ -13,12 +13,13 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class TelegramInitializer implements CommandLineRunner {
     
-    private final TelegramBotService telegramBotService;
+    private final NotificationSink notificationSink;
     
     @Override
     public void run(String... args) throws Exception {
         System.out.println("🤖 Инициализация Telegram бота...");
-        telegramBotService.sendMessage(
+        // Только постановка в очередь: запуск не ждет сети
+        notificationSink.publish(
             "🚀 *Система управления пассажиропотоком запущена!*\n\n" +
             "📡 Сервер: http://localhost:8080\n" +
             "📋 API: /api/*\n" +
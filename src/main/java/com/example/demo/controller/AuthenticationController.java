@@ -1,5 +1,7 @@
 package com.example.demo.controller;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -32,11 +34,8 @@ public class AuthenticationController {
     @Operation(summary = "Логин пользователя")
     @ApiResponse(responseCode = "200", description = "Успешная аутентификация")
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(
-            @CookieValue(name = "access_token", required = false) String accessToken,
-            @CookieValue(name = "refresh_token", required = false) String refreshToken,
-            @RequestBody LoginRequest loginRequest) {
-        return authService.login(loginRequest, accessToken, refreshToken);
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(@RequestBody LoginRequest loginRequest) {
+        return authService.login(loginRequest);
     }
 
     @Operation(summary = "Обновление токена")
@@ -1,20 +1,39 @@
 package com.example.demo.controller;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.demo.exception.AppException;
+import com.example.demo.model.SensorData;
 import com.example.demo.service.SensorService;
 import com.example.demo.service.FileService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 
 @RestController
 @RequiredArgsConstructor
 public class FileController {
 
+    // Атрибуты Tomcat для отправки файла через sendfile после выхода из контроллера
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final FileService fileService;
     private final SensorService sensorService;
 
@@ -33,4 +52,86 @@ public class FileController {
             return ResponseEntity.notFound().build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Выдача файла показаний датчика с поддержкой Range (один диапазон).
+     * Тело отправляет Tomcat через sendfile, иначе FileChannel.transferTo.
+     */
+    @PreAuthorize("hasAuthority('FILE_DOWNLOAD')")
+    @GetMapping("/download/{id}")
+    public void downloadFile(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        SensorData sensorData = sensorService.getSensorData(id);
+        if (sensorData.getFilePath() == null) {
+            throw new AppException(HttpStatus.NOT_FOUND, "No file attached to sensor data " + id);
+        }
+        Path path = fileService.resolveStored(sensorData.getFilePath());
+        long length = Files.size(path);
+
+        // Имя файла - хэш содержимого, поэтому служит и ETag
+        String etag = "\"" + stripExtension(path.getFileName().toString()) + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag)
+                ? request.getHeader(HttpHeaders.RANGE) : null;
+        List<HttpRange> ranges = parseRanges(rangeHeader, length, response);
+        // Несколько диапазонов не поддерживаются - по RFC 9110 можно отдать файл целиком
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+
+        response.setContentType("text/csv");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"sensor-" + id + ".csv\"");
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            fileService.transferTo(path, start, count, response.getOutputStream());
+        }
+    }
+
+    private static List<HttpRange> parseRanges(String header, long length, HttpServletResponse response) {
+        if (header == null || length == 0) {
+            return List.of();
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            for (HttpRange range : ranges) {
+                if (range.getRangeStart(length) >= length) {
+                    throw new IllegalArgumentException("Range starts after end of file");
+                }
+            }
+            return ranges;
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            throw new AppException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, "Invalid range: " + header);
+        }
+    }
+
+    // If-Range: диапазон учитывается только при сильном совпадении ETag (RFC 9110, 13.1.5).
+    // Last-Modified не отдается, поэтому дата в If-Range всегда считается несовпадением
+    private static boolean ifRangeMatches(String ifRange, String etag) {
+        return ifRange == null || ifRange.trim().equals(etag);
+    }
+
+    private static String stripExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -1,17 +1,29 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.KeysetPage;
+import com.example.demo.dto.PassengerBatchResult;
+import com.example.demo.dto.PassengerCountCreateDTO;
 import com.example.demo.dto.PassengerResponseDto;
+import com.example.demo.enums.IngestDurability;
+import com.example.demo.exception.AppException;
 import com.example.demo.model.PassengerCount;
+import com.example.demo.service.PassengerCountBatchService;
 import com.example.demo.service.PassengerCountService;
+import com.example.demo.service.PassengerIngestBuffer;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -20,16 +32,29 @@ import java.util.List;
 public class PassengerController {
     
     private final PassengerCountService passengerCountService;
+    private final PassengerCountBatchService passengerCountBatchService;
+    private final PassengerIngestBuffer passengerIngestBuffer;
+    private final ObjectMapper objectMapper;
+    
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     
     // === Чтение (возвращаем DTO) ===
     
+    // Списки отсортированы по (timestamp, id) от новых к старым.
+    // Ответ - одна страница (без limit - passenger.page.default-size строк),
+    // курсор следующей - в заголовке X-Next-Cursor (нет заголовка - последняя страница)
+    
     //@PreAuthorize("hasAuthority('PASSENGER_READ')")
     @GetMapping
-    public ResponseEntity<List<PassengerResponseDto>> getAllPassengerCounts() {
+    public ResponseEntity<List<PassengerResponseDto>> getAllPassengerCounts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<PassengerResponseDto> passengers = passengerCountService.getAll();
-            log.info("Returning {} passengers", passengers.size());
-            return ResponseEntity.ok(passengers);
+            KeysetPage<PassengerResponseDto> page = passengerCountService.getPage(cursor, limit);
+            log.info("Returning {} passengers", page.items().size());
+            return pageResponse(page);
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error getting all passengers", e);
             return ResponseEntity.internalServerError().build();
@@ -53,10 +78,13 @@ public class PassengerController {
     
     //@PreAuthorize("hasAuthority('PASSENGER_READ')")
     @GetMapping("/stop/{stopId}")
-    public ResponseEntity<List<PassengerResponseDto>> getByStop(@PathVariable Long stopId) {
+    public ResponseEntity<List<PassengerResponseDto>> getByStop(@PathVariable Long stopId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<PassengerResponseDto> passengers = passengerCountService.getByStopId(stopId);
-            return ResponseEntity.ok(passengers);
+            return pageResponse(passengerCountService.getPageByStopId(stopId, cursor, limit));
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error getting passengers by stop id: {}", stopId, e);
             return ResponseEntity.internalServerError().build();
@@ -65,10 +93,13 @@ public class PassengerController {
     
     //@PreAuthorize("hasAuthority('PASSENGER_READ')")
     @GetMapping("/bus/{busId}")
-    public ResponseEntity<List<PassengerResponseDto>> getByBus(@PathVariable Long busId) {
+    public ResponseEntity<List<PassengerResponseDto>> getByBus(@PathVariable Long busId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<PassengerResponseDto> passengers = passengerCountService.getByBusId(busId);
-            return ResponseEntity.ok(passengers);
+            return pageResponse(passengerCountService.getPageByBusId(busId, cursor, limit));
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error getting passengers by bus id: {}", busId, e);
             return ResponseEntity.internalServerError().build();
@@ -77,10 +108,13 @@ public class PassengerController {
     
     //@PreAuthorize("hasAuthority('PASSENGER_READ')")
     @GetMapping("/route/{routeId}")
-    public ResponseEntity<List<PassengerResponseDto>> getByRoute(@PathVariable Long routeId) {
+    public ResponseEntity<List<PassengerResponseDto>> getByRoute(@PathVariable Long routeId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<PassengerResponseDto> passengers = passengerCountService.getByRouteId(routeId);
-            return ResponseEntity.ok(passengers);
+            return pageResponse(passengerCountService.getPageByRouteId(routeId, cursor, limit));
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error getting passengers by route id: {}", routeId, e);
             return ResponseEntity.internalServerError().build();
@@ -102,6 +136,69 @@ public class PassengerController {
         }
     }
     
+    /**
+     * Пакетная загрузка показаний счетчиков массивом JSON
+     */
+    //@PreAuthorize("hasAuthority('PASSENGER_CREATE')")
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PassengerBatchResult> createPassengerCountBatch(
+            @RequestBody List<PassengerCountCreateDTO> passengerCounts) {
+        try {
+            return batchResponse(passengerCountBatchService.ingest(passengerCounts.iterator()));
+        } catch (Exception e) {
+            log.error("Error ingesting passenger batch", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * Пакетная загрузка показаний счетчиков потоком NDJSON (одна запись на строку)
+     */
+    //@PreAuthorize("hasAuthority('PASSENGER_CREATE')")
+    @PostMapping(value = "/batch", consumes = "application/x-ndjson")
+    public ResponseEntity<PassengerBatchResult> createPassengerCountStream(HttpServletRequest request) {
+        try (MappingIterator<PassengerCountCreateDTO> rows = objectMapper
+                .readerFor(PassengerCountCreateDTO.class)
+                .readValues(request.getInputStream())) {
+            return batchResponse(passengerCountBatchService.ingest(rows));
+        } catch (Exception e) {
+            log.error("Error ingesting passenger NDJSON stream", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * Быстрый прием события счетчика через буфер отложенной записи.
+     * ENQUEUE - 202 сразу после постановки в очередь, FLUSH - 201 после записи в БД
+     */
+    //@PreAuthorize("hasAuthority('PASSENGER_CREATE')")
+    @PostMapping("/ingest")
+    public CompletableFuture<ResponseEntity<Void>> ingestPassengerCount(
+            @RequestBody PassengerCountCreateDTO passengerCount) {
+        HttpStatus status = passengerIngestBuffer.getDurability() == IngestDurability.FLUSH
+                ? HttpStatus.CREATED
+                : HttpStatus.ACCEPTED;
+        return passengerIngestBuffer.submit(passengerCount)
+                .thenApply(ignored -> ResponseEntity.status(status).<Void>build());
+    }
+    
+    private ResponseEntity<List<PassengerResponseDto>> pageResponse(KeysetPage<PassengerResponseDto> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+    
+    private ResponseEntity<PassengerBatchResult> batchResponse(PassengerBatchResult result) {
+        if (result.hasError()) {
+            log.warn("Passenger batch completed with {} successes and {} failures",
+                    result.successCount(), result.failedCount());
+            return ResponseEntity.unprocessableEntity().body(result);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+    
     //@PreAuthorize("hasAuthority('PASSENGER_UPDATE')")
     @PutMapping("/{id}")
     public ResponseEntity<PassengerCount> updatePassengerCount(@PathVariable Long id, @RequestBody PassengerCount passengerCount) {
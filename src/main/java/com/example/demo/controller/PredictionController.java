@@ -1,6 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.RoutePredictionDTO;
+import com.example.demo.service.PassengerLoadProfileService;
 import com.example.demo.service.PredictionService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -8,15 +9,19 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/predictions")
 public class PredictionController {
     
     private final PredictionService predictionService;
+    private final PassengerLoadProfileService loadProfileService;
     
-    public PredictionController(PredictionService predictionService) {
+    public PredictionController(PredictionService predictionService,
+                                PassengerLoadProfileService loadProfileService) {
         this.predictionService = predictionService;
+        this.loadProfileService = loadProfileService;
     }
     
     @PreAuthorize("hasAuthority('PREDICTION_READ')")
@@ -34,9 +39,21 @@ public class PredictionController {
         return predictionService.getDailyPredictions(routeId);
     }
     
+    @PreAuthorize("hasAuthority('PREDICTION_READ')")
+    @GetMapping("/current-load")
+    public Map<Long, Integer> getCurrentLoads() {
+        return predictionService.calculateCurrentLoads();
+    }
+    
     @PreAuthorize("hasAuthority('PREDICTION_READ')")
     @GetMapping("/current-load/{busId}")
     public Integer getCurrentLoad(@PathVariable Long busId) {
         return predictionService.calculateCurrentLoad(busId);
     }
+    
+    @PreAuthorize("hasAuthority('REPORT_CREATE')")
+    @PostMapping("/profile/rebuild")
+    public Integer rebuildProfile() {
+        return loadProfileService.rebuild();
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.demo.controller;
 
+import com.example.demo.service.PassengerRollupService;
 import com.example.demo.service.ReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,6 +13,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 
@@ -21,6 +23,7 @@ import java.time.LocalDate;
 public class ReportController {
     
     private final ReportService reportService;
+    private final PassengerRollupService passengerRollupService;
     
     @PreAuthorize("hasAuthority('REPORT_READ')")
     @GetMapping("/daily")
@@ -53,8 +56,8 @@ public class ReportController {
     
     @PreAuthorize("hasAuthority('REPORT_READ')")
     @GetMapping("/daily/csv")
-    @Operation(summary = "Получить CSV отчет", description = "Генерация CSV отчета по пассажиропотоку")
-    public ResponseEntity<byte[]> getDailyCsvReport(
+    @Operation(summary = "Получить CSV отчет", description = "Потоковая выгрузка CSV отчета по пассажиропотоку")
+    public ResponseEntity<StreamingResponseBody> getDailyCsvReport(
             @Parameter(description = "Дата отчета", example = "2024-01-15")
             @RequestParam(required = false) 
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
@@ -63,20 +66,39 @@ public class ReportController {
             date = LocalDate.now();
         }
         
-        byte[] report = reportService.generateCsvReport(date);
+        String filename = String.format("passenger-data-%s.csv", 
+            date.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd")));
         
-        if (report.length == 0) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Ошибка генерации CSV отчета".getBytes());
+        return csvResponse(filename, date, date);
+    }
+    
+    @PreAuthorize("hasAuthority('REPORT_READ')")
+    @GetMapping("/range/csv")
+    @Operation(summary = "Получить CSV отчет за период", description = "Потоковая выгрузка CSV отчета за несколько дней")
+    public ResponseEntity<StreamingResponseBody> getRangeCsvReport(
+            @Parameter(description = "Первый день периода", example = "2024-01-01")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Последний день периода", example = "2024-01-31")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().build();
         }
         
-        String filename = String.format("passenger-data-%s.csv", 
-            date.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+        java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        String filename = String.format("passenger-data-%s_%s.csv", 
+            from.format(formatter), to.format(formatter));
+        
+        return csvResponse(filename, from, to);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> csvResponse(String filename, LocalDate from, LocalDate to) {
+        StreamingResponseBody body = out -> reportService.writeCsvReport(from, to, out);
         
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                 .contentType(MediaType.parseMediaType("text/csv"))
-                .body(report);
+                .body(body);
     }
     
     @PreAuthorize("hasAuthority('REPORT_READ')")
@@ -101,4 +123,19 @@ public class ReportController {
         String summary = reportService.generateTelegramSummary(date);
         return ResponseEntity.ok(summary);
     }
+    
+    @PreAuthorize("hasAuthority('REPORT_CREATE')")
+    @PostMapping("/rollups/backfill")
+    @Operation(summary = "Пересчитать почасовые агрегаты", description = "Фоновый пересчет агрегатов пассажиропотока за период из сырых данных")
+    public ResponseEntity<String> backfillRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        passengerRollupService.backfill(from, to);
+        return ResponseEntity.accepted().body("Пересчет агрегатов запущен");
+    }
 }
\ No newline at end of file
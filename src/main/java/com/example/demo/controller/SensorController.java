@@ -1,20 +1,33 @@
 package com.example.demo.controller;
 
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.List;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.demo.dto.BusSensorSnapshot;
 import com.example.demo.dto.CsvImportResult;
+import com.example.demo.dto.ImportJobView;
+import com.example.demo.dto.KeysetPage;
 import com.example.demo.dto.SensorDataCreateDTO;
+import com.example.demo.dto.SensorSeries;
+import com.example.demo.exception.AppException;
 import com.example.demo.model.Bus;
 import com.example.demo.model.SensorData;
+import com.example.demo.model.SensorType;
 import com.example.demo.service.SensorService;
+import com.example.demo.service.SensorSnapshotService;
 import com.example.demo.service.BusService;
 import com.example.demo.service.CsvImportService;
+import com.example.demo.service.FileService;
+import com.example.demo.service.ImportJobService;
+import com.example.demo.service.SensorTimeSeriesService;
 
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
@@ -29,11 +42,23 @@ public class SensorController {
     private final SensorService sensorService;
     private final BusService busService; 
     private final CsvImportService csvImportService;
+    private final SensorTimeSeriesService sensorTimeSeriesService;
+    private final ImportJobService importJobService;
+    private final SensorSnapshotService sensorSnapshotService;
+    private final FileService fileService;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     
-    public SensorController(SensorService sensorService, BusService busService, CsvImportService csvImportService) {
+    public SensorController(SensorService sensorService, BusService busService, CsvImportService csvImportService,
+            SensorTimeSeriesService sensorTimeSeriesService, ImportJobService importJobService,
+            SensorSnapshotService sensorSnapshotService, FileService fileService) {
         this.sensorService = sensorService;
         this.busService = busService;
         this.csvImportService = csvImportService;
+        this.sensorTimeSeriesService = sensorTimeSeriesService;
+        this.importJobService = importJobService;
+        this.sensorSnapshotService = sensorSnapshotService;
+        this.fileService = fileService;
     }
     
     @PreAuthorize("hasAuthority('SENSOR_CREATE')")
@@ -45,24 +70,60 @@ public class SensorController {
         sensorData.setSensorType(dto.getSensorType());
         sensorData.setValue(dto.getValue());
         sensorData.setTimestamp(dto.getTimestamp());
-        sensorData.setAnomaly(dto.isAnomaly());
         sensorData.setBus(bus);
-        SensorData saved = sensorService.createSensorData(sensorData);
+        SensorData saved = sensorService.createSensorData(sensorData, dto.getAnomaly());
         return ResponseEntity.ok(saved);
     }
 
+    // Списки отдаются страницами по (timestamp, id) от новых к старым.
+    // Курсор следующей страницы - в заголовке X-Next-Cursor (нет заголовка - последняя страница)
+
     @PreAuthorize("hasAuthority('SENSOR_READ')")
     @GetMapping
-    public List<SensorData> getAllSensorData(
-            @PageableDefault(size = 20) Pageable pageable,
-            @RequestParam(required = false) String type) {
-        return sensorService.getAll();
+    @Operation(summary = "Sensor readings, newest first, filtered and keyset-paginated")
+    public ResponseEntity<List<SensorData>> getAllSensorData(
+            @RequestParam(required = false) SensorType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Boolean anomaly,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return pageResponse(sensorService.getPage(null, type, from, to, anomaly, cursor, limit));
+    }
+
+    @PreAuthorize("hasAuthority('SENSOR_READ')")
+    @GetMapping("/latest")
+    @Operation(summary = "Latest reading of every sensor of every bus",
+            description = "Served from memory; updated after each committed write")
+    public List<BusSensorSnapshot> getLatestReadings() {
+        return sensorSnapshotService.getFleet();
     }
 
     @PreAuthorize("hasAuthority('SENSOR_READ')")
     @GetMapping("{busId}")
-    public List<SensorData> getSensorDataByBusId(@PathVariable Long busId) {
-        return sensorService.getSensorDataByBusId(busId);
+    @Operation(summary = "Sensor readings of one bus, newest first, filtered and keyset-paginated")
+    public ResponseEntity<List<SensorData>> getSensorDataByBusId(
+            @PathVariable Long busId,
+            @RequestParam(required = false) SensorType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Boolean anomaly,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return pageResponse(sensorService.getPage(busId, type, from, to, anomaly, cursor, limit));
+    }
+
+    @PreAuthorize("hasAuthority('SENSOR_READ')")
+    @GetMapping("{busId}/series")
+    @Operation(summary = "Time series of one sensor for a bus",
+            description = "Min/max/avg per step; served from raw readings or minute/hour rollups depending on the range")
+    public SensorSeries getSensorSeries(
+            @PathVariable Long busId,
+            @RequestParam SensorType type,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer maxPoints) {
+        return sensorTimeSeriesService.getSeries(busId, type, from, to, maxPoints);
     }
 
     @PreAuthorize("hasAuthority('SENSOR_UPDATE')")
@@ -130,6 +191,62 @@ public class SensorController {
         }
     }
     
+    @PreAuthorize("hasAuthority('SENSOR_CREATE')")
+    @PostMapping(value = "/import-jobs", consumes = "multipart/form-data")
+    @Operation(summary = "Start a background import of sensor data from a CSV file")
+    @ApiResponse(responseCode = "202", description = "Import job queued")
+    public ResponseEntity<ImportJobView> startImportJob(
+            @Parameter(description = "CSV file to upload", required = true)
+            @RequestParam("file") MultipartFile file) {
+        log.info("Received CSV import job request: {} ({} bytes)",
+                file.getOriginalFilename(), file.getSize());
+
+        if (!isCsvFile(file) || file.isEmpty()) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "File must be a non-empty CSV file");
+        }
+
+        ImportJobView job = importJobService.submit(file);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/sensors/import-jobs/" + job.id()))
+                .body(job);
+    }
+
+    @PreAuthorize("hasAuthority('SENSOR_CREATE')")
+    @PostMapping("{id}/reprocess")
+    @Operation(summary = "Re-import the CSV file attached to a sensor reading as a background job",
+            description = "The stored file is memory-mapped and its segments are parsed in parallel")
+    @ApiResponse(responseCode = "202", description = "Import job queued")
+    public ResponseEntity<ImportJobView> reprocessAttachment(@PathVariable Long id) {
+        SensorData sensorData = sensorService.getSensorData(id);
+        if (sensorData.getFilePath() == null) {
+            throw new AppException(HttpStatus.NOT_FOUND, "No file attached to sensor data " + id);
+        }
+        Path path = fileService.resolveStored(sensorData.getFilePath());
+        ImportJobView job = importJobService.submitReprocess(path, path.getFileName().toString());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/sensors/import-jobs/" + job.id()))
+                .body(job);
+    }
+
+    @PreAuthorize("hasAuthority('SENSOR_READ')")
+    @GetMapping("/import-jobs/{id}")
+    @Operation(summary = "Progress of a background CSV import",
+            description = "errorCursor/errorLimit page through the error list; pass nextErrorCursor on the next poll")
+    public ImportJobView getImportJob(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") int errorCursor,
+            @RequestParam(required = false) Integer errorLimit) {
+        return importJobService.getJob(id, errorCursor, errorLimit);
+    }
+
+    private ResponseEntity<List<SensorData>> pageResponse(KeysetPage<SensorData> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+
     private boolean isCsvFile(MultipartFile file) {
         String originalFilename = file.getOriginalFilename();
         if (originalFilename == null) {
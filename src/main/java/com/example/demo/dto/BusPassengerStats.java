@@ -0,0 +1,9 @@
+package com.example.demo.dto;
+
+public record BusPassengerStats(
+    Long busId,
+    String busModel,
+    Long routeId,
+    Long entered,
+    Long exited
+) {}
@@ -0,0 +1,6 @@
+package com.example.demo.dto;
+
+/**
+ * Автобус и его текущий маршрут (routeId = null - автобус без маршрута)
+ */
+public record BusRouteRef(Long busId, Long routeId) {}
@@ -0,0 +1,10 @@
+package com.example.demo.dto;
+
+import java.util.Map;
+
+import com.example.demo.model.SensorType;
+
+public record BusSensorSnapshot(
+    Long busId,
+    Map<SensorType, SensorLatestValue> readings
+) {}
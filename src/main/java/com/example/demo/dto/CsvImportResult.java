@@ -2,12 +2,20 @@ package com.example.demo.dto;
 
 import java.util.List;
 
+/**
+ * Итог импорта CSV; skippedCount - показания, уже сохраненные ранее (только при повторной обработке файла)
+ */
 public record CsvImportResult(
     int successCount,
     int failedCount,
+    int skippedCount,
     List<String> errors
 ) {
+    public CsvImportResult(int successCount, int failedCount, List<String> errors) {
+        this(successCount, failedCount, 0, errors);
+    }
+
     public boolean hasError() {
         return failedCount > 0 || (errors != null && !errors.isEmpty());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.example.demo.enums.ImportJobStatus;
+
+/**
+ * Состояние задачи импорта для опроса клиентом.
+ * rowsSkipped - показания, которые уже были сохранены (повторная обработка файла).
+ * errors - сообщения начиная с позиции errorCursor, nextErrorCursor - позиция для следующего запроса.
+ */
+public record ImportJobView(
+    String id,
+    String fileName,
+    ImportJobStatus status,
+    long rowsRead,
+    long rowsImported,
+    long rowsFailed,
+    long rowsSkipped,
+    int chunksWritten,
+    double rowsPerSecond,
+    LocalDateTime submittedAt,
+    LocalDateTime startedAt,
+    LocalDateTime finishedAt,
+    int errorCursor,
+    int nextErrorCursor,
+    List<String> errors
+) {}
@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Состояние импорта после записи очередной порции;
+ * rowsSkipped - уже сохраненные показания, пропущенные при повторной обработке файла;
+ * newErrors - сообщения, добавленные этой порцией
+ */
+public record ImportProgress(
+    long rowsRead,
+    long rowsImported,
+    long rowsFailed,
+    long rowsSkipped,
+    int chunksWritten,
+    List<String> newErrors
+) {}
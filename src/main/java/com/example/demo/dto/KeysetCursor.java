@@ -0,0 +1,46 @@
+package com.example.demo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import org.springframework.http.HttpStatus;
+
+import com.example.demo.exception.AppException;
+
+/**
+ * Позиция в ленте записей, отсортированной по (timestamp, id) по убыванию.
+ * Передается клиенту как непрозрачная строка base64url; общая для всех постраничных выдач.
+ */
+public record KeysetCursor(LocalDateTime timestamp, Long id) {
+
+    // Начало ленты: позже любой реальной записи
+    public static final KeysetCursor FIRST =
+            new KeysetCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    public boolean isFirst() {
+        return FIRST.equals(this);
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбор курсора из запроса; пустой курсор - начало ленты
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + token);
+        }
+    }
+}
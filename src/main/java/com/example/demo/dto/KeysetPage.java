@@ -0,0 +1,8 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Страница выборки и курсор следующей страницы (null - дальше записей нет)
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor) {}
@@ -0,0 +1,32 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Итог пакетной загрузки; rejectedRows - отклоненные строки (номер с 1 и причина),
+ * по ним буфер отложенной записи сообщает результат каждому запросу, из них же строится errors
+ */
+public record PassengerBatchResult(
+    int successCount,
+    int failedCount,
+    @JsonIgnore List<RowError> rejectedRows
+) {
+    public record RowError(int row, String message) {
+        @Override
+        public String toString() {
+            return String.format("Row %d: %s", row, message);
+        }
+    }
+
+    @JsonProperty("errors")
+    public List<String> errors() {
+        return rejectedRows.stream().map(RowError::toString).toList();
+    }
+
+    public boolean hasError() {
+        return failedCount > 0 || !rejectedRows.isEmpty();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PassengerCountCreateDTO {
+    private Long busId;
+    private Long stopId;
+    private Integer entered;
+    private Integer exited;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,11 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+public record PassengerRollupSlice(
+    Long routeId,
+    Long stopId,
+    LocalDateTime bucketHour,
+    Long net,
+    Long records
+) {}
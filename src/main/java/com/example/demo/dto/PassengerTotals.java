@@ -0,0 +1,7 @@
+package com.example.demo.dto;
+
+public record PassengerTotals(
+    Long entered,
+    Long exited,
+    Long records
+) {}
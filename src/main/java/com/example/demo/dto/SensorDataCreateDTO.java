@@ -11,6 +11,7 @@ public class SensorDataCreateDTO {
     private SensorType sensorType;
     private Double value;
     private LocalDateTime timestamp;
-    private boolean anomaly;
+    // null - флаг не передан, ставится по порогам
+    private Boolean anomaly;
     private Long busId;
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+public record SensorLatestValue(
+    double value,
+    LocalDateTime timestamp,
+    boolean anomaly
+) {}
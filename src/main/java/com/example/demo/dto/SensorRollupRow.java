@@ -0,0 +1,23 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.model.SensorType;
+
+/**
+ * Агрегат показаний датчика за один интервал (минута или час)
+ */
+public record SensorRollupRow(
+    Long busId,
+    SensorType sensorType,
+    LocalDateTime bucket,
+    double min,
+    double max,
+    double sum,
+    long count
+) {
+    public SensorRollupRow merge(double value) {
+        return new SensorRollupRow(busId, sensorType, bucket,
+                Math.min(min, value), Math.max(max, value), sum + value, count + 1);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+import com.example.demo.enums.SeriesResolution;
+import com.example.demo.model.SensorType;
+
+/**
+ * Ряд показаний за период: source - уровень хранения, из которого он построен
+ */
+public record SensorSeries(
+    Long busId,
+    SensorType sensorType,
+    SeriesResolution source,
+    long stepSeconds,
+    List<SensorSeriesPoint> points
+) {}
@@ -0,0 +1,11 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+public record SensorSeriesPoint(
+    LocalDateTime bucket,
+    double min,
+    double max,
+    double avg,
+    long count
+) {}
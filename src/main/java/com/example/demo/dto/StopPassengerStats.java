@@ -0,0 +1,9 @@
+package com.example.demo.dto;
+
+public record StopPassengerStats(
+    Long stopId,
+    String stopName,
+    Long entered,
+    Long exited,
+    Long records
+) {}
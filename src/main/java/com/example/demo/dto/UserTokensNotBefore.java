@@ -0,0 +1,8 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+public record UserTokensNotBefore(
+    String username,
+    LocalDateTime notBefore
+) {}
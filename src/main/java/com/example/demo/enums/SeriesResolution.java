@@ -0,0 +1,28 @@
+package com.example.demo.enums;
+
+import java.time.Duration;
+
+/**
+ * Уровни хранения временного ряда датчиков: сырые показания и агрегаты
+ */
+public enum SeriesResolution {
+    RAW("sensor_readings", Duration.ZERO),
+    MINUTE("sensor_rollup_minute", Duration.ofMinutes(1)),
+    HOUR("sensor_rollup_hour", Duration.ofHours(1));
+
+    private final String table;
+    private final Duration bucket;
+
+    SeriesResolution(String table, Duration bucket) {
+        this.table = table;
+        this.bucket = bucket;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public Duration getBucket() {
+        return bucket;
+    }
+}
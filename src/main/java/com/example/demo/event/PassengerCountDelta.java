@@ -0,0 +1,40 @@
+package com.example.demo.event;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.dto.PassengerCountCreateDTO;
+import com.example.demo.model.PassengerCount;
+
+/**
+ * Изменение одной записи пассажиропотока: records = +1 для новой строки,
+ * -1 для удаленной (обновление - пара из удаления старой и добавления новой).
+ * routeId - маршрут, зафиксированный при подсчете; null - для старых строк без маршрута.
+ */
+public record PassengerCountDelta(
+    Long routeId,
+    Long busId,
+    Long stopId,
+    LocalDateTime timestamp,
+    int entered,
+    int exited,
+    int records
+) {
+    public static PassengerCountDelta added(PassengerCountCreateDTO row, Long routeId) {
+        return new PassengerCountDelta(routeId, row.getBusId(), row.getStopId(), row.getTimestamp(),
+                row.getEntered(), row.getExited(), 1);
+    }
+
+    public static PassengerCountDelta added(PassengerCount passengerCount) {
+        return new PassengerCountDelta(passengerCount.getRouteId(), passengerCount.getBus().getId(), passengerCount.getStop().getId(),
+                passengerCount.getTimestamp(), passengerCount.getEntered(), passengerCount.getExited(), 1);
+    }
+
+    public static PassengerCountDelta removed(PassengerCount passengerCount) {
+        return new PassengerCountDelta(passengerCount.getRouteId(), passengerCount.getBus().getId(), passengerCount.getStop().getId(),
+                passengerCount.getTimestamp(), -passengerCount.getEntered(), -passengerCount.getExited(), -1);
+    }
+
+    public int net() {
+        return entered - exited;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo.event;
+
+import java.util.List;
+
+/**
+ * Публикуется внутри транзакции, изменившей passenger_counts
+ */
+public record PassengerCountsChangedEvent(List<PassengerCountDelta> deltas) {
+}
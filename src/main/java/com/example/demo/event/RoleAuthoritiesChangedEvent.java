@@ -0,0 +1,7 @@
+package com.example.demo.event;
+
+/**
+ * Публикуется при изменении ролей или прав: наборы прав ролей нужно пересобрать
+ */
+public record RoleAuthoritiesChangedEvent() {
+}
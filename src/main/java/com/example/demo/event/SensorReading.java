@@ -0,0 +1,22 @@
+package com.example.demo.event;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.model.SensorData;
+import com.example.demo.model.SensorType;
+
+/**
+ * Одно показание датчика в виде, не зависящем от JPA-сущности
+ */
+public record SensorReading(
+    Long busId,
+    SensorType sensorType,
+    LocalDateTime timestamp,
+    double value,
+    boolean anomaly
+) {
+    public static SensorReading of(SensorData sensorData) {
+        return new SensorReading(sensorData.getBus().getId(), sensorData.getSensorType(),
+                sensorData.getTimestamp(), sensorData.getValue(), sensorData.isAnomaly());
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.demo.event;
+
+import java.util.List;
+
+/**
+ * Публикуется внутри транзакции изменения или удаления уже записанных показаний;
+ * readings - прежние и новые значения затронутых строк
+ */
+public record SensorReadingsEditedEvent(List<SensorReading> readings) {
+}
@@ -0,0 +1,9 @@
+package com.example.demo.event;
+
+import java.util.List;
+
+/**
+ * Публикуется внутри транзакции записи новых показаний датчиков
+ */
+public record SensorReadingsRecordedEvent(List<SensorReading> readings) {
+}
@@ -0,0 +1,130 @@
+package com.example.demo.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.event.RoleAuthoritiesChangedEvent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Кэш проверенных access-токенов: SHA-256 токена -> пользователь и его права.
+ * Запись живет до истечения срока токена или до явной инвалидации
+ * (выход, отзыв токенов, изменение пользователя), сам токен в памяти не хранится.
+ */
+@Component
+@RequiredArgsConstructor
+public class AuthenticatedTokenCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, CachedAuthentication> cache;
+
+    public record CachedAuthentication(
+        UserDetails user,
+        RoleAuthorities authorities,
+        LocalDateTime issuedAt,
+        LocalDateTime expiry
+    ) {}
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, CachedAuthentication>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedAuthentication value, long currentTime) {
+                        return untilExpiry(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedAuthentication value, long currentTime,
+                            long currentDuration) {
+                        return untilExpiry(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedAuthentication value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "authTokens");
+    }
+
+    public CachedAuthentication get(String tokenValue) {
+        return cache.getIfPresent(digest(tokenValue));
+    }
+
+    /**
+     * Сохранить результат проверки токена вместе с набором прав роли
+     */
+    public CachedAuthentication put(String tokenValue, UserDetails user, RoleAuthorities authorities,
+            LocalDateTime issuedAt, LocalDateTime expiry) {
+        CachedAuthentication entry = new CachedAuthentication(user, authorities, issuedAt, expiry);
+        if (untilExpiry(entry) > 0) {
+            cache.put(digest(tokenValue), entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Сброс всех записей пользователя (выход, отзыв токенов, изменение пользователя или роли)
+     */
+    public void invalidateUser(String username) {
+        cache.asMap().values().removeIf(entry -> entry.user().getUsername().equals(username));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // Записи хранят набор прав роли, поэтому изменение ролей или прав сбрасывает весь кэш
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleAuthoritiesChanged(RoleAuthoritiesChangedEvent event) {
+        invalidateAll();
+    }
+
+    // JwtTokenProviderImpl пишет локальное время как UTC: парсер JWT сверяет exp с Instant.now(),
+    // а TokenRevocationService - с LocalDateTime.now(). Запись живет до более раннего из двух сроков
+    private static long untilExpiry(CachedAuthentication entry) {
+        if (entry.expiry() == null) {
+            return 0;
+        }
+        long byInstant = Duration.between(Instant.now(), entry.expiry().toInstant(ZoneOffset.UTC)).toNanos();
+        long byLocalTime = Duration.between(LocalDateTime.now(), entry.expiry()).toNanos();
+        return Math.max(0, Math.min(byInstant, byLocalTime));
+    }
+
+    private static String digest(String tokenValue) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(tokenValue.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -4,7 +4,6 @@ import java.io.IOException;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -26,6 +25,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private String accessTokenCookieName;
     private final JwtTokenProvider tokenProvider;
     private final UserDetailsService userDetailsService;
+    private final AuthenticatedTokenCache tokenCache;
+    private final TokenRevocationService revocationService;
+    private final RoleAuthorityRegistry authorityRegistry;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, 
@@ -33,24 +35,38 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     @NonNull FilterChain filterChain) throws ServletException, IOException {
         String accessToken  = getJwtFromCookie(request);
 
-        if(accessToken == null || !tokenProvider.validateToken(accessToken)) {
+        if(accessToken == null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        // get username from token
-        String username = tokenProvider.getUsernameFromToken(accessToken);
+        // Повторные запросы с тем же токеном обходятся без проверки подписи и обращения к БД
+        AuthenticatedTokenCache.CachedAuthentication cached = tokenCache.get(accessToken);
+        if(cached == null) {
+            // Подпись проверяется один раз, имя пользователя берется из того же разбора
+            ParsedToken token = tokenProvider.parseToken(accessToken);
 
-        if(username == null) {
+            if(!token.valid() || token.subject() == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+
+            long generation = authorityRegistry.generation();
+            UserDetails userDetails = userDetailsService.loadUserByUsername(token.subject());
+            cached = tokenCache.put(accessToken, userDetails, authorityRegistry.forUser(userDetails, generation),
+                    token.issuedAt(), token.expiry());
+        }
+
+        // Отзыв проверяется и для записей из кэша
+        if(revocationService.isRevoked(cached.user().getUsername(), cached.issuedAt())) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                userDetails,
-                null,
-                userDetails.getAuthorities()
+        // Права - общий неизменяемый набор роли, без копирования на каждый запрос
+        RoleAuthenticationToken authenticationToken = new RoleAuthenticationToken(
+                cached.user(),
+                cached.authorities()
         );
 
         authenticationToken.setDetails(new WebAuthenticationDetailsSource()
@@ -15,6 +15,11 @@ public interface JwtTokenProvider {
     Token generateRefreshToken(long duration, TemporalUnit durationType, 
             UserDetails user);
     
+    /**
+     * Разбор токена с проверкой подписи и срока за один проход
+     */
+    ParsedToken parseToken(String tokenValue);
+
     boolean validateToken(String tokenValue);
     
     String getUsernameFromToken(String tokenValue);
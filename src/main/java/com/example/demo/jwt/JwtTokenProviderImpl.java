@@ -15,10 +15,12 @@ import org.springframework.stereotype.Service;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import com.example.demo.model.Token;
 import com.example.demo.enums.TokenType;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
 @Service
@@ -27,10 +29,17 @@ public class JwtTokenProviderImpl implements JwtTokenProvider {
     
     @Value("${jwt.secret}")
     private String jwtSecret;
-    
-    private SecretKey getSigningKey() {
-        byte[] decodedKey = Base64.getDecoder().decode(jwtSecret);
-        return Keys.hmacShaKeyFor(decodedKey);
+
+    // Ключ и парсер неизменяемы и потокобезопасны - создаются один раз
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(jwtSecret));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
     
     @Override
@@ -46,7 +55,7 @@ public class JwtTokenProviderImpl implements JwtTokenProvider {
                 .subject(username)
                 .issuedAt(toDate(now))
                 .expiration(toDate(expiryDate))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
 
         return new Token(TokenType.ACCESS, token, expiryDate, false, null);
@@ -64,26 +73,30 @@ public class JwtTokenProviderImpl implements JwtTokenProvider {
                 .subject(username)
                 .issuedAt(toDate(now))
                 .expiration(toDate(expiryDate))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
 
         return new Token(TokenType.REFRESH, token, expiryDate, false, null);
     }
     
     @Override
-    public boolean validateToken(String tokenValue) {
-        if (tokenValue == null) return false;
-        
+    public ParsedToken parseToken(String tokenValue) {
+        if (tokenValue == null) return ParsedToken.INVALID;
+
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(tokenValue);
-            return true;
-        } catch (JwtException e) {
-            return false;
+            Claims claims = extractAllClaims(tokenValue);
+            return new ParsedToken(true, claims.getSubject(),
+                    toLocalDateTime(claims.getExpiration()),
+                    claims.getIssuedAt() != null ? toLocalDateTime(claims.getIssuedAt()) : null);
+        } catch (JwtException | IllegalArgumentException e) {
+            return ParsedToken.INVALID;
         }
     }
+
+    @Override
+    public boolean validateToken(String tokenValue) {
+        return parseToken(tokenValue).valid();
+    }
     
     @Override
     public String getUsernameFromToken(String tokenValue) {
@@ -101,11 +114,7 @@ public class JwtTokenProviderImpl implements JwtTokenProvider {
     }
     
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
     
     private Date toDate(LocalDateTime localDateTime) {
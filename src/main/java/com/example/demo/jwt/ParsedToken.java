@@ -0,0 +1,16 @@
+package com.example.demo.jwt;
+
+import java.time.LocalDateTime;
+
+/**
+ * Результат однократного разбора и проверки подписи JWT.
+ * Для недействительного токена valid = false, остальные поля null.
+ */
+public record ParsedToken(
+    boolean valid,
+    String subject,
+    LocalDateTime expiry,
+    LocalDateTime issuedAt
+) {
+    public static final ParsedToken INVALID = new ParsedToken(false, null, null, null);
+}
@@ -0,0 +1,42 @@
+package com.example.demo.jwt;
+
+import java.util.Collection;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Аутентификация по access-токену: права берутся из общего набора роли без копирования
+ */
+public class RoleAuthenticationToken extends AbstractAuthenticationToken {
+
+    private final UserDetails principal;
+    private final transient RoleAuthorities roleAuthorities;
+
+    public RoleAuthenticationToken(UserDetails principal, RoleAuthorities roleAuthorities) {
+        super(null);
+        this.principal = principal;
+        this.roleAuthorities = roleAuthorities;
+        setAuthenticated(true);
+    }
+
+    public RoleAuthorities getRoleAuthorities() {
+        return roleAuthorities;
+    }
+
+    @Override
+    public Collection<GrantedAuthority> getAuthorities() {
+        return roleAuthorities.authorities();
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return principal;
+    }
+}
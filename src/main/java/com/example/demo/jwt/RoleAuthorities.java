@@ -0,0 +1,31 @@
+package com.example.demo.jwt;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Неизменяемый набор прав одной роли: битовая маска номеров прав
+ * из RoleAuthorityRegistry и общий список объектов прав для Authentication
+ */
+public final class RoleAuthorities {
+
+    public static final RoleAuthorities EMPTY = new RoleAuthorities(new BitSet(), List.of());
+
+    private final BitSet bits;
+    private final List<GrantedAuthority> authorities;
+
+    RoleAuthorities(BitSet bits, List<GrantedAuthority> authorities) {
+        this.bits = (BitSet) bits.clone();
+        this.authorities = List.copyOf(authorities);
+    }
+
+    boolean has(int bit) {
+        return bits.get(bit);
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return authorities;
+    }
+}
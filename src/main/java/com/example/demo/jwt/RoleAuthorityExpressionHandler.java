@@ -0,0 +1,39 @@
+package com.example.demo.jwt;
+
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Обработчик выражений методной безопасности с проверкой прав по набору роли
+ */
+public class RoleAuthorityExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+
+    private final RoleAuthorityRegistry registry;
+
+    public RoleAuthorityExpressionHandler(RoleAuthorityRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
+        EvaluationContext context = super.createEvaluationContext(authentication, mi);
+        if (context instanceof StandardEvaluationContext standard
+                && standard.getRootObject().getValue() instanceof MethodSecurityExpressionOperations root) {
+            standard.setRootObject(new RoleAuthorityExpressionRoot(root, registry));
+        }
+        return context;
+    }
+
+    @Override
+    protected MethodSecurityExpressionOperations createSecurityExpressionRoot(Authentication authentication,
+            MethodInvocation invocation) {
+        return new RoleAuthorityExpressionRoot(super.createSecurityExpressionRoot(authentication, invocation),
+                registry);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demo.jwt;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.example.demo.event.RoleAuthoritiesChangedEvent;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JPA-слушатель Role и Permission: любое изменение сбрасывает наборы прав ролей.
+ * Изменения коллекции Role.permissions отслеживает RolePermissionsListener.
+ * Сброс выполняется после фиксации транзакции, см. RoleAuthorityRegistry.
+ */
+@RequiredArgsConstructor
+public class RoleAuthorityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        eventPublisher.publishEvent(new RoleAuthoritiesChangedEvent());
+    }
+}
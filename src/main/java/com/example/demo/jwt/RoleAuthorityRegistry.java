@@ -0,0 +1,132 @@
+package com.example.demo.jwt;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.event.RoleAuthoritiesChangedEvent;
+import com.example.demo.model.Permission;
+import com.example.demo.model.Role;
+import com.example.demo.model.User;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Наборы прав ролей, собранные один раз на роль.
+ * Каждое право получает постоянный номер бита и один общий объект GrantedAuthority,
+ * поэтому проверка hasAuthority - поиск номера и проверка бита без выделения памяти.
+ * Наборы пересобираются после изменения ролей, прав или связей роль-право
+ * (RoleAuthorityListener, RolePermissionsListener).
+ * Вызывающий читает generation() до загрузки роли: набор по роли, загруженной до изменения,
+ * возвращается, но не кэшируется.
+ */
+@Slf4j
+@Component
+public class RoleAuthorityRegistry {
+
+    private record InternedAuthority(int bit, GrantedAuthority authority) {}
+
+    // Имя права -> номер бита; номера не переиспользуются
+    private final Map<String, InternedAuthority> authorities = new ConcurrentHashMap<>();
+    private final AtomicInteger nextBit = new AtomicInteger();
+
+    // ID роли -> набор прав
+    private final Map<Long, RoleAuthorities> roles = new ConcurrentHashMap<>();
+    // Растет при каждом изменении ролей или прав
+    private final AtomicLong generation = new AtomicLong();
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Набор прав роли; loadedAt - значение generation(), прочитанное до загрузки роли
+     */
+    public RoleAuthorities forRole(Role role, long loadedAt) {
+        if (role == null) {
+            return RoleAuthorities.EMPTY;
+        }
+        if (role.getId() == null) {
+            return build(role);
+        }
+        RoleAuthorities cached = roles.get(role.getId());
+        if (cached != null) {
+            return cached;
+        }
+        RoleAuthorities built = build(role);
+        if (generation.get() == loadedAt) {
+            cached = roles.putIfAbsent(role.getId(), built);
+        }
+        return cached != null ? cached : built;
+    }
+
+    /**
+     * Пересобрать набор по только что загруженной роли (вход в систему):
+     * так подхватываются и изменения прав, сделанные в БД в обход JPA
+     */
+    public RoleAuthorities refresh(Role role, long loadedAt) {
+        if (role == null || role.getId() == null) {
+            return forRole(role, loadedAt);
+        }
+        RoleAuthorities rebuilt = build(role);
+        if (generation.get() == loadedAt) {
+            roles.put(role.getId(), rebuilt);
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Набор прав пользователя; для UserDetails не из БД права собираются без кэширования
+     */
+    public RoleAuthorities forUser(UserDetails user, long loadedAt) {
+        if (user instanceof User entity) {
+            return forRole(entity.getRole(), loadedAt);
+        }
+        return build(user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    public boolean isGranted(RoleAuthorities granted, String authority) {
+        InternedAuthority interned = authorities.get(authority);
+        return interned != null && granted.has(interned.bit());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleAuthoritiesChanged(RoleAuthoritiesChangedEvent event) {
+        // Сначала поколение: набор, собранный по старой роли, уже не попадет в кэш
+        generation.incrementAndGet();
+        roles.clear();
+        log.debug("Role authority sets invalidated");
+    }
+
+    private RoleAuthorities build(Role role) {
+        if (role.getPermissions() == null) {
+            return RoleAuthorities.EMPTY;
+        }
+        return build(role.getPermissions().stream().map(Permission::getAuthority).toList());
+    }
+
+    private RoleAuthorities build(Collection<String> names) {
+        BitSet bits = new BitSet();
+        List<GrantedAuthority> granted = new ArrayList<>(names.size());
+        for (String name : names) {
+            InternedAuthority interned = authorities.computeIfAbsent(name,
+                    key -> new InternedAuthority(nextBit.getAndIncrement(), new SimpleGrantedAuthority(key)));
+            if (!bits.get(interned.bit())) {
+                bits.set(interned.bit());
+                granted.add(interned.authority());
+            }
+        }
+        return new RoleAuthorities(bits, granted);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.jwt;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.UserTokensNotBefore;
+import com.example.demo.model.User;
+import com.example.demo.repository.TokenRepository;
+import com.example.demo.repository.UserRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Отзыв токенов через границу "not-before" для каждого пользователя:
+ * токен, выпущенный раньше границы, недействителен. Границы хранятся в users.tokens_not_before
+ * и в памяти, поэтому проверка на каждом запросе - один поиск в хэш-таблице.
+ * Истекшие строки token удаляются по расписанию порциями.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationService {
+
+    private final TokenRepository tokenRepository;
+    private final UserRepository userRepository;
+    private final AuthenticatedTokenCache tokenCache;
+
+    @Value("${jwt.refresh.duration.day}")
+    private long refreshTokenDurationDay;
+
+    @Value("${jwt.revocation.purge-batch-size:1000}")
+    private int purgeBatchSize;
+
+    // Имя пользователя -> граница отзыва
+    private final Map<String, LocalDateTime> notBefore = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (UserTokensNotBefore row : userRepository.findTokensNotBefore()) {
+            notBefore.put(row.username(), row.notBefore());
+        }
+        log.info("Token revocation index loaded: {} users", notBefore.size());
+    }
+
+    /**
+     * Отозвать все токены пользователя, выпущенные до текущей секунды.
+     * Время выпуска в JWT хранится с точностью до секунды, поэтому граница тоже округляется:
+     * токены, выпущенные сразу после отзыва, остаются действительными.
+     * Истекшие строки не удаляются здесь - это делает purgeExpired.
+     */
+    public void revokeAll(User user) {
+        LocalDateTime boundary = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        userRepository.updateTokensNotBefore(user.getId(), boundary);
+        notBefore.put(user.getUsername(), boundary);
+        tokenCache.invalidateUser(user.getUsername());
+
+        tokenRepository.disableAllByUserId(user.getId());
+    }
+
+    /**
+     * Токен отозван, если выпущен строго раньше границы пользователя
+     */
+    public boolean isRevoked(String username, LocalDateTime issuedAt) {
+        LocalDateTime boundary = notBefore.get(username);
+        return boundary != null && (issuedAt == null || issuedAt.isBefore(boundary));
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        long deleted = 0;
+        int batch;
+        do {
+            batch = tokenRepository.deleteExpiredBatch(now, purgeBatchSize);
+            deleted += batch;
+        } while (batch >= purgeBatchSize);
+
+        // Все токены старше срока жизни refresh-токена уже истекли
+        LocalDateTime cutoff = now.minusDays(refreshTokenDurationDay);
+        notBefore.values().removeIf(boundary -> boundary.isBefore(cutoff));
+        int cleared = userRepository.clearTokensNotBeforeBefore(cutoff);
+        if (deleted > 0 || cleared > 0) {
+            log.info("Token purge: {} expired tokens deleted, {} revocation boundaries cleared", deleted, cleared);
+        }
+    }
+}
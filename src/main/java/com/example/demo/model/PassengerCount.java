@@ -12,7 +12,11 @@ import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "passenger_counts")
+@Table(name = "passenger_counts", indexes = {
+    @Index(name = "idx_passenger_counts_timestamp", columnList = "timestamp, id"),
+    @Index(name = "idx_passenger_counts_stop_timestamp", columnList = "stop_id, timestamp, id"),
+    @Index(name = "idx_passenger_counts_bus_timestamp", columnList = "bus_id, timestamp, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -45,4 +49,9 @@ public class PassengerCount {
     @Column(nullable = false)
     @NotNull(message = "Временная метка не может быть пустой")
     private LocalDateTime timestamp;
+
+    // Маршрут автобуса на момент подсчета (в агрегатах строка остается за этим маршрутом)
+    @JsonIgnore
+    @Column(name = "route_id")
+    private Long routeId;
 }
@@ -0,0 +1,47 @@
+package com.example.demo.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Почасовой агрегат пассажиропотока по (час, маршрут, автобус, остановка).
+ * Маршрут фиксируется на момент записи, 0 - автобус без маршрута.
+ */
+@Entity
+@Table(name = "passenger_hourly_rollup",
+    uniqueConstraints = @UniqueConstraint(name = "uk_passenger_rollup_key",
+        columnNames = {"bucket_hour", "route_id", "bus_id", "stop_id"}),
+    indexes = @Index(name = "idx_passenger_rollup_route_hour", columnList = "route_id, bucket_hour"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PassengerHourlyRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "bucket_hour", nullable = false)
+    private LocalDateTime bucketHour;
+    
+    @Column(name = "route_id", nullable = false)
+    private Long routeId;
+    
+    @Column(name = "bus_id", nullable = false)
+    private Long busId;
+    
+    @Column(name = "stop_id", nullable = false)
+    private Long stopId;
+    
+    @Column(nullable = false)
+    private Long entered;
+    
+    @Column(nullable = false)
+    private Long exited;
+    
+    @Column(name = "record_count", nullable = false)
+    private Long recordCount;
+}
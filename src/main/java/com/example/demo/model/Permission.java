@@ -4,8 +4,11 @@ import java.util.Set;
 
 import org.springframework.security.core.GrantedAuthority;
 
+import com.example.demo.jwt.RoleAuthorityListener;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -19,6 +22,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Entity
+@EntityListeners(RoleAuthorityListener.class)
 @Table(uniqueConstraints = {
     @jakarta.persistence.UniqueConstraint(columnNames = 
     {"resource", "operation"})})
@@ -4,8 +4,11 @@ import java.util.Set;
 
 import org.springframework.security.core.GrantedAuthority;
 
+import com.example.demo.jwt.RoleAuthorityListener;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -27,6 +30,7 @@ import lombok.Setter;
 @Setter
 @Builder
 @Entity
+@EntityListeners(RoleAuthorityListener.class)
 @Table(name = "roles")
 public class Role implements GrantedAuthority {
     @Id
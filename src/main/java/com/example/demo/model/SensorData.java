@@ -13,7 +13,14 @@ import lombok.Data;
 @AllArgsConstructor
 @Data
 @Entity
-@Table(name = "sensor_data")
+@Table(name = "sensor_data", indexes = {
+    // Лента без фильтра и по типу датчика, очистка старых строк
+    @Index(name = "idx_sensor_data_timestamp", columnList = "timestamp, id"),
+    // Лента по автобусу
+    @Index(name = "idx_sensor_data_bus_timestamp", columnList = "bus_id, timestamp, id")
+    // Индекс (bus_id, sensor_type, timestamp) и частичный индекс аномалий создаются
+    // миграцией при запуске - см. SensorDataBatchRepository.updateIndexes
+})
 public class SensorData {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -6,6 +6,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
@@ -35,6 +36,10 @@ public class User implements UserDetails {
     
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<Token> tokens;
+
+    // Токены, выпущенные раньше этого момента, отозваны
+    @Column(name = "tokens_not_before")
+    private LocalDateTime tokensNotBefore;
     
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -1,9 +1,14 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.BusRouteRef;
 import com.example.demo.model.Bus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BusRepository extends JpaRepository<Bus, Long> {
@@ -13,4 +18,20 @@ public interface BusRepository extends JpaRepository<Bus, Long> {
     
     // Поиск по модели
     List<Bus> findByModelContainingIgnoreCase(String model);
+    
+    // Какие из переданных ID существуют
+    @Query("SELECT b.id FROM Bus b WHERE b.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    // Текущие маршруты переданных автобусов (отсутствующих ID в ответе нет)
+    @Query("SELECT new com.example.demo.dto.BusRouteRef(b.id, r.id) FROM Bus b LEFT JOIN b.route r WHERE b.id IN :ids")
+    List<BusRouteRef> findRouteRefs(@Param("ids") Collection<Long> ids);
+    
+    // Текущий маршрут автобуса
+    @Query("SELECT r.id FROM Bus b JOIN b.route r WHERE b.id = :id")
+    Optional<Long> findRouteIdById(@Param("id") Long id);
+    
+    // Все ID автобусов (проверка ссылок при импорте)
+    @Query("SELECT b.id FROM Bus b")
+    List<Long> findAllIds();
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.example.demo.repository;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.dto.PassengerCountCreateDTO;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Пакетная запись показаний счетчиков напрямую через JDBC.
+ * IDENTITY-ключи отключают пакетную вставку в Hibernate, поэтому
+ * здесь используется JdbcTemplate.batchUpdate.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PassengerCountBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO passenger_counts (bus_id, stop_id, entered, exited, timestamp, route_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Записать строки, routeByBus - маршрут каждого автобуса на момент подсчета
+     */
+    public int insertAll(List<PassengerCountCreateDTO> rows, Map<Long, Long> routeByBus) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.getBusId());
+            ps.setLong(2, row.getStopId());
+            ps.setInt(3, row.getEntered());
+            ps.setInt(4, row.getExited());
+            ps.setObject(5, row.getTimestamp());
+            ps.setObject(6, routeByBus.get(row.getBusId()), Types.BIGINT);
+        });
+        return rows.size();
+    }
+}
@@ -1,14 +1,21 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.BusPassengerStats;
 import com.example.demo.dto.PassengerResponseDto;
+import com.example.demo.dto.StopPassengerStats;
 import com.example.demo.model.PassengerCount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PassengerCountRepository extends JpaRepository<PassengerCount, Long> {
@@ -23,7 +30,7 @@ public interface PassengerCountRepository extends JpaRepository<PassengerCount,
     @Query("SELECT pc FROM PassengerCount pc WHERE pc.bus.route.id = :routeId")
     List<PassengerCount> findByRouteId(@Param("routeId") Long routeId);
     
-    // Все пассажиры как DTO
+    // Страница всех записей после курсора (ts, id), по убыванию
     @Query("SELECT new com.example.demo.dto.PassengerResponseDto(" +
            "p.id, p.timestamp, " +
            "b.id, b.model, " +
@@ -32,8 +39,10 @@ public interface PassengerCountRepository extends JpaRepository<PassengerCount,
            "FROM PassengerCount p " +
            "LEFT JOIN p.bus b " +
            "LEFT JOIN p.stop s " +
-           "ORDER BY p.timestamp DESC")
-    List<PassengerResponseDto> findAllAsDto();
+           "WHERE (p.timestamp < :ts OR (p.timestamp = :ts AND p.id < :id)) " +
+           "ORDER BY p.timestamp DESC, p.id DESC")
+    List<PassengerResponseDto> findPageAsDto(@Param("ts") LocalDateTime ts,
+        @Param("id") Long id, Pageable pageable);
     
     // Поиск по ID как DTO
     @Query("SELECT new com.example.demo.dto.PassengerResponseDto(" +
@@ -47,7 +56,7 @@ public interface PassengerCountRepository extends JpaRepository<PassengerCount,
            "WHERE p.id = :id")
     Optional<PassengerResponseDto> findDtoById(@Param("id") Long id);
     
-    // По остановке как DTO
+    // Страница по остановке после курсора
     @Query("SELECT new com.example.demo.dto.PassengerResponseDto(" +
            "p.id, p.timestamp, " +
            "b.id, b.model, " +
@@ -56,11 +65,14 @@ public interface PassengerCountRepository extends JpaRepository<PassengerCount,
            "FROM PassengerCount p " +
            "LEFT JOIN p.bus b " +
            "LEFT JOIN p.stop s " +
-           "WHERE p.stop.id = :stopId " +
-           "ORDER BY p.timestamp DESC")
-    List<PassengerResponseDto> findByStopIdAsDto(@Param("stopId") Long stopId);
+           "WHERE p.stop.id = :stopId AND " +
+           "(p.timestamp < :ts OR (p.timestamp = :ts AND p.id < :id)) " +
+           "ORDER BY p.timestamp DESC, p.id DESC")
+    List<PassengerResponseDto> findPageByStopIdAsDto(@Param("stopId") Long stopId,
+        @Param("ts") LocalDateTime ts,
+        @Param("id") Long id, Pageable pageable);
     
-    // По автобусу как DTO
+    // Страница по автобусу после курсора
     @Query("SELECT new com.example.demo.dto.PassengerResponseDto(" +
            "p.id, p.timestamp, " +
            "b.id, b.model, " +
@@ -69,11 +81,14 @@ public interface PassengerCountRepository extends JpaRepository<PassengerCount,
            "FROM PassengerCount p " +
            "LEFT JOIN p.bus b " +
            "LEFT JOIN p.stop s " +
-           "WHERE p.bus.id = :busId " +
-           "ORDER BY p.timestamp DESC")
-    List<PassengerResponseDto> findByBusIdAsDto(@Param("busId") Long busId);
+           "WHERE p.bus.id = :busId AND " +
+           "(p.timestamp < :ts OR (p.timestamp = :ts AND p.id < :id)) " +
+           "ORDER BY p.timestamp DESC, p.id DESC")
+    List<PassengerResponseDto> findPageByBusIdAsDto(@Param("busId") Long busId,
+        @Param("ts") LocalDateTime ts,
+        @Param("id") Long id, Pageable pageable);
     
-    // По маршруту как DTO
+    // Страница по маршруту после курсора
     @Query("SELECT new com.example.demo.dto.PassengerResponseDto(" +
            "p.id, p.timestamp, " +
            "b.id, b.model, " +
@@ -82,16 +97,57 @@ public interface PassengerCountRepository extends JpaRepository<PassengerCount,
            "FROM PassengerCount p " +
            "LEFT JOIN p.bus b " +
            "LEFT JOIN p.stop s " +
-           "WHERE b.route.id = :routeId " +
-           "ORDER BY p.timestamp DESC")
-    List<PassengerResponseDto> findByRouteIdAsDto(@Param("routeId") Long routeId);
+           "WHERE b.route.id = :routeId AND " +
+           "(p.timestamp < :ts OR (p.timestamp = :ts AND p.id < :id)) " +
+           "ORDER BY p.timestamp DESC, p.id DESC")
+    List<PassengerResponseDto> findPageByRouteIdAsDto(@Param("routeId") Long routeId,
+        @Param("ts") LocalDateTime ts,
+        @Param("id") Long id, Pageable pageable);
     
     // Поиск по временному диапазону
     List<PassengerCount> findByTimestampBetween(LocalDateTime start, LocalDateTime end);
     
+    // Потоковое чтение за период (курсор с fetch size, только внутри транзакции)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.example.demo.dto.PassengerResponseDto(" +
+           "p.id, p.timestamp, " +
+           "b.id, b.model, " +
+           "s.id, s.name, " +
+           "p.entered, p.exited) " +
+           "FROM PassengerCount p " +
+           "LEFT JOIN p.bus b " +
+           "LEFT JOIN p.stop s " +
+           "WHERE p.timestamp BETWEEN :start AND :end " +
+           "ORDER BY p.timestamp, p.id")
+    Stream<PassengerResponseDto> streamDtoByTimestampBetween(@Param("start") LocalDateTime start,
+        @Param("end") LocalDateTime end);
+    
     // Статистика по остановке за период
     @Query("SELECT SUM(pc.entered), SUM(pc.exited) FROM PassengerCount pc WHERE pc.stop.id = :stopId AND pc.timestamp BETWEEN :start AND :end")
     Object[] findPassengerStatsByStopAndPeriod(@Param("stopId") Long stopId, 
         @Param("start") LocalDateTime start, 
         @Param("end") LocalDateTime end);
+    
+    // Агрегаты по остановкам за период (одним GROUP BY)
+    @Query("SELECT new com.example.demo.dto.StopPassengerStats(" +
+           "s.id, s.name, SUM(p.entered), SUM(p.exited), COUNT(p)) " +
+           "FROM PassengerCount p " +
+           "JOIN p.stop s " +
+           "WHERE p.timestamp BETWEEN :start AND :end " +
+           "GROUP BY s.id, s.name " +
+           "ORDER BY s.id")
+    List<StopPassengerStats> aggregateByStop(@Param("start") LocalDateTime start,
+        @Param("end") LocalDateTime end);
+    
+    // Агрегаты по автобусам за период (одним GROUP BY)
+    @Query("SELECT new com.example.demo.dto.BusPassengerStats(" +
+           "b.id, b.model, r.id, SUM(p.entered), SUM(p.exited)) " +
+           "FROM PassengerCount p " +
+           "JOIN p.bus b " +
+           "LEFT JOIN b.route r " +
+           "WHERE p.timestamp BETWEEN :start AND :end " +
+           "GROUP BY b.id, b.model, r.id " +
+           "ORDER BY b.id")
+    List<BusPassengerStats> aggregateByBus(@Param("start") LocalDateTime start,
+        @Param("end") LocalDateTime end);
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.example.demo.repository;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.model.PassengerHourlyRollup;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Инкрементальное обновление и пересчет почасовых агрегатов (PostgreSQL).
+ * Пересчет и прибавление дельт разделены advisory-блокировкой на время транзакции:
+ * дельты берут ее разделяемо, пересчет - монопольно, поэтому пересчет не теряет
+ * и не удваивает дельты параллельных записей.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PassengerRollupBatchRepository {
+
+    // Маршрут берется из дельты; для старых строк без route_id - текущий маршрут автобуса
+    // Ключ advisory-блокировки агрегатов ("rollup" в ASCII)
+    private static final long ROLLUP_LOCK_KEY = 0x726F6C6C7570L;
+
+    private static final String LOCK_SHARED_SQL = "SELECT pg_advisory_xact_lock_shared(?)";
+
+    private static final String LOCK_EXCLUSIVE_SQL = "SELECT pg_advisory_xact_lock(?)";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO passenger_hourly_rollup " +
+            "(bucket_hour, route_id, bus_id, stop_id, entered, exited, record_count) " +
+            "SELECT ?, COALESCE(?, b.route_id, 0), b.id, ?, ?, ?, ? FROM buses b WHERE b.id = ? " +
+            "ON CONFLICT (bucket_hour, route_id, bus_id, stop_id) DO UPDATE SET " +
+            "entered = passenger_hourly_rollup.entered + EXCLUDED.entered, " +
+            "exited = passenger_hourly_rollup.exited + EXCLUDED.exited, " +
+            "record_count = passenger_hourly_rollup.record_count + EXCLUDED.record_count";
+
+    private static final String DELETE_RANGE_SQL =
+            "DELETE FROM passenger_hourly_rollup WHERE bucket_hour >= ? AND bucket_hour < ?";
+
+    private static final String REBUILD_RANGE_SQL =
+            "INSERT INTO passenger_hourly_rollup " +
+            "(bucket_hour, route_id, bus_id, stop_id, entered, exited, record_count) " +
+            "SELECT date_trunc('hour', p.timestamp), COALESCE(p.route_id, b.route_id, 0), p.bus_id, p.stop_id, " +
+            "SUM(p.entered), SUM(p.exited), COUNT(*) " +
+            "FROM passenger_counts p JOIN buses b ON b.id = p.bus_id " +
+            "WHERE p.timestamp >= ? AND p.timestamp < ? " +
+            "GROUP BY 1, 2, 3, 4";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Прибавить дельты в переданном порядке (routeId = null - маршрут не зафиксирован)
+     */
+    public void applyDeltas(List<PassengerHourlyRollup> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query(LOCK_SHARED_SQL, rs -> {}, ROLLUP_LOCK_KEY);
+        jdbcTemplate.batchUpdate(UPSERT_SQL, deltas, deltas.size(), (ps, row) -> {
+            ps.setObject(1, row.getBucketHour());
+            ps.setObject(2, row.getRouteId(), Types.BIGINT);
+            ps.setLong(3, row.getStopId());
+            ps.setLong(4, row.getEntered());
+            ps.setLong(5, row.getExited());
+            ps.setLong(6, row.getRecordCount());
+            ps.setLong(7, row.getBusId());
+        });
+    }
+
+    /**
+     * Номер текущей транзакции (xid8); назначается, если транзакция еще ничего не записала
+     */
+    public long currentTransactionId() {
+        return jdbcTemplate.queryForObject("SELECT pg_current_xact_id()::text::bigint", Long.class);
+    }
+
+    /**
+     * Снимок текущей транзакции в текстовом виде xmin:xmax:xip,...
+     */
+    public String currentSnapshot() {
+        return jdbcTemplate.queryForObject("SELECT pg_current_snapshot()::text", String.class);
+    }
+
+    /**
+     * Пересчитать агрегаты за [start, end) из сырых данных.
+     * Ждет фиксации транзакций, уже прибавивших дельты; новые дельты ждут фиксации пересчета.
+     */
+    @Transactional
+    public int rebuildRange(LocalDateTime start, LocalDateTime end) {
+        jdbcTemplate.query(LOCK_EXCLUSIVE_SQL, rs -> {}, ROLLUP_LOCK_KEY);
+        jdbcTemplate.update(DELETE_RANGE_SQL, start, end);
+        return jdbcTemplate.update(REBUILD_RANGE_SQL, start, end);
+    }
+}
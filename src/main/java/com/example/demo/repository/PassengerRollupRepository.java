@@ -0,0 +1,31 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.PassengerRollupSlice;
+import com.example.demo.dto.PassengerTotals;
+import com.example.demo.model.PassengerHourlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PassengerRollupRepository extends JpaRepository<PassengerHourlyRollup, Long> {
+    
+    // Итоги по всем маршрутам за период [start, end)
+    @Query("SELECT new com.example.demo.dto.PassengerTotals(" +
+           "COALESCE(SUM(r.entered), 0), COALESCE(SUM(r.exited), 0), COALESCE(SUM(r.recordCount), 0)) " +
+           "FROM PassengerHourlyRollup r " +
+           "WHERE r.bucketHour >= :start AND r.bucketHour < :end")
+    PassengerTotals findTotals(@Param("start") LocalDateTime start,
+        @Param("end") LocalDateTime end);
+    
+    // Чистый поток по (маршрут, остановка, час) начиная с since - для профиля загрузки
+    @Query("SELECT new com.example.demo.dto.PassengerRollupSlice(" +
+           "r.routeId, r.stopId, r.bucketHour, SUM(r.entered) - SUM(r.exited), SUM(r.recordCount)) " +
+           "FROM PassengerHourlyRollup r " +
+           "WHERE r.bucketHour >= :since " +
+           "GROUP BY r.routeId, r.stopId, r.bucketHour")
+    List<PassengerRollupSlice> findSlicesSince(@Param("since") LocalDateTime since);
+}
@@ -0,0 +1,147 @@
+package com.example.demo.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.event.SensorReading;
+import com.example.demo.model.SensorType;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Пакетная запись показаний датчиков в sensor_data одним запросом по массивам
+ * (IDENTITY-ключи отключают пакетную вставку в Hibernate) и выборка последних показаний.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SensorDataBatchRepository {
+
+    private static final String UNNEST_SQL =
+            "SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::float8[], ?::timestamp[], ?::boolean[]) " +
+            "AS u(bus_id, sensor_type, value, ts, anomaly)";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO sensor_data (bus_id, sensor_type, value, timestamp, anomaly) " + UNNEST_SQL +
+            " RETURNING bus_id, sensor_type, timestamp, value, anomaly";
+
+    // Повторная обработка файла: точно такое же показание (автобус, датчик, время, значение)
+    // уже сохранено - строка пропускается; RETURNING отдает только реально вставленные строки
+    private static final String INSERT_NEW_SQL =
+            "INSERT INTO sensor_data (bus_id, sensor_type, value, timestamp, anomaly) " +
+            "SELECT u.bus_id, u.sensor_type, u.value, u.ts, u.anomaly FROM (" + UNNEST_SQL + ") u " +
+            "WHERE NOT EXISTS (SELECT 1 FROM sensor_data s WHERE s.bus_id = u.bus_id " +
+            "AND s.sensor_type = u.sensor_type AND s.timestamp = u.ts AND s.value = u.value) " +
+            "RETURNING bus_id, sensor_type, timestamp, value, anomaly";
+
+    // Последнее показание одного датчика: обратный проход по idx_sensor_data_bus_type_timestamp до первой строки
+    private static final String LATEST_ONE_SQL =
+            "SELECT s.timestamp, s.value, s.anomaly FROM sensor_data s " +
+            "WHERE s.bus_id = b.id AND s.sensor_type = t.sensor_type " +
+            "ORDER BY s.timestamp DESC LIMIT 1";
+
+    // Последние показания всех пар (автобус, тип): по одному короткому проходу индекса на пару
+    private static final String LATEST_SQL =
+            "SELECT b.id AS bus_id, t.sensor_type, l.timestamp, l.value, l.anomaly " +
+            "FROM buses b CROSS JOIN (VALUES " +
+            Arrays.stream(SensorType.values()).map(type -> "('" + type.name() + "')").collect(Collectors.joining(", ")) +
+            ") AS t(sensor_type) " +
+            "CROSS JOIN LATERAL (" + LATEST_ONE_SQL + ") l";
+
+    private static final String LATEST_FOR_SQL =
+            "SELECT b.id AS bus_id, t.sensor_type, l.timestamp, l.value, l.anomaly " +
+            "FROM buses b CROSS JOIN (VALUES (CAST(? AS varchar))) AS t(sensor_type) " +
+            "CROSS JOIN LATERAL (" + LATEST_ONE_SQL + ") l WHERE b.id = ?";
+
+    // (автобус, датчик, время): последние показания и пропуск повторов при повторной обработке.
+    // Неуникальный: разные значения одного датчика в один момент допустимы
+    private static final String BUS_TYPE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_sensor_data_bus_type_timestamp ON sensor_data (bus_id, sensor_type, timestamp)";
+
+    // Аномалий мало: частичный индекс обслуживает ленту с anomaly=true и не растет с таблицей
+    private static final String ANOMALY_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_sensor_data_anomalies ON sensor_data (timestamp, id) WHERE anomaly";
+
+    // Индексы прошлых версий, которые не использует ни один запрос
+    private static final List<String> OBSOLETE_INDEXES = List.of(
+            "idx_sensor_data_type_timestamp",
+            "idx_sensor_data_anomaly_timestamp");
+
+    // Уникальное ограничение прошлой версии (ddl-auto создал его как constraint) отклоняло показания,
+    // отличающиеся только значением
+    private static final String DROP_UNIQUE_SQL =
+            "ALTER TABLE sensor_data DROP CONSTRAINT IF EXISTS uk_sensor_data_bus_type_timestamp";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Миграция индексов sensor_data при запуске; ddl-auto их не создает и не удаляет,
+     * ошибка создания индекса останавливает запуск, а не пропускается молча
+     */
+    public void updateIndexes() {
+        jdbcTemplate.execute(DROP_UNIQUE_SQL);
+        OBSOLETE_INDEXES.forEach(index -> jdbcTemplate.execute("DROP INDEX IF EXISTS " + index));
+        jdbcTemplate.execute(BUS_TYPE_INDEX_SQL);
+        jdbcTemplate.execute(ANOMALY_INDEX_SQL);
+    }
+
+    /**
+     * Записать показания; skipStored - пропускать уже сохраненные точные повторы (повторная обработка файла).
+     * Возвращает вставленные показания
+     */
+    public List<SensorReading> insertAll(List<SensorReading> readings, boolean skipStored) {
+        if (readings.isEmpty()) {
+            return List.of();
+        }
+        int size = readings.size();
+        Long[] busIds = new Long[size];
+        String[] types = new String[size];
+        Double[] values = new Double[size];
+        Timestamp[] timestamps = new Timestamp[size];
+        Boolean[] anomalies = new Boolean[size];
+        for (int i = 0; i < size; i++) {
+            SensorReading reading = readings.get(i);
+            busIds[i] = reading.busId();
+            types[i] = reading.sensorType().name();
+            values[i] = reading.value();
+            timestamps[i] = Timestamp.valueOf(reading.timestamp());
+            anomalies[i] = reading.anomaly();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(skipStored ? INSERT_NEW_SQL : INSERT_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", busIds));
+            ps.setArray(2, connection.createArrayOf("varchar", types));
+            ps.setArray(3, connection.createArrayOf("float8", values));
+            ps.setArray(4, connection.createArrayOf("timestamp", timestamps));
+            ps.setArray(5, connection.createArrayOf("boolean", anomalies));
+            return ps;
+        }, SensorDataBatchRepository::mapReading);
+    }
+
+    public List<SensorReading> findLatestPerBusAndType() {
+        return jdbcTemplate.query(LATEST_SQL, SensorDataBatchRepository::mapReading);
+    }
+
+    public Optional<SensorReading> findLatest(Long busId, SensorType sensorType) {
+        return jdbcTemplate.query(LATEST_FOR_SQL, SensorDataBatchRepository::mapReading,
+                sensorType.name(), busId).stream().findFirst();
+    }
+
+    private static SensorReading mapReading(ResultSet rs, int rowNum) throws SQLException {
+        return new SensorReading(
+                rs.getLong("bus_id"),
+                SensorType.valueOf(rs.getString("sensor_type")),
+                rs.getObject("timestamp", LocalDateTime.class),
+                rs.getDouble("value"),
+                rs.getBoolean("anomaly"));
+    }
+}
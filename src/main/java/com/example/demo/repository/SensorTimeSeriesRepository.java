@@ -0,0 +1,178 @@
+package com.example.demo.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.dto.SensorRollupRow;
+import com.example.demo.dto.SensorSeriesPoint;
+import com.example.demo.enums.SeriesResolution;
+import com.example.demo.event.SensorReading;
+import com.example.demo.model.SensorType;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Хранилище временных рядов датчиков (PostgreSQL): сырые показания
+ * в таблице, секционированной по дням, и агрегаты min/max/sum/count по минутам и часам.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SensorTimeSeriesRepository {
+
+    private static final String READINGS_TABLE = "sensor_readings";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final List<String> SCHEMA_SQL = List.of(
+            "CREATE TABLE IF NOT EXISTS sensor_readings (" +
+            "bus_id BIGINT NOT NULL, sensor_type VARCHAR(32) NOT NULL, ts TIMESTAMP NOT NULL, " +
+            "value DOUBLE PRECISION NOT NULL, anomaly BOOLEAN NOT NULL DEFAULT FALSE" +
+            ") PARTITION BY RANGE (ts)",
+            "CREATE INDEX IF NOT EXISTS idx_sensor_readings_bus_type_ts " +
+            "ON sensor_readings (bus_id, sensor_type, ts)",
+            rollupTableSql("sensor_rollup_minute"),
+            rollupTableSql("sensor_rollup_hour"),
+            "CREATE INDEX IF NOT EXISTS idx_sensor_rollup_minute_bucket ON sensor_rollup_minute (bucket)");
+
+    private static final String INSERT_READING_SQL =
+            "INSERT INTO sensor_readings (bus_id, sensor_type, ts, value, anomaly) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_ROLLUP_SQL =
+            "INSERT INTO %s AS r (bus_id, sensor_type, bucket, min_value, max_value, sum_value, sample_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (bus_id, sensor_type, bucket) DO UPDATE SET " +
+            "min_value = LEAST(r.min_value, EXCLUDED.min_value), " +
+            "max_value = GREATEST(r.max_value, EXCLUDED.max_value), " +
+            "sum_value = r.sum_value + EXCLUDED.sum_value, " +
+            "sample_count = r.sample_count + EXCLUDED.sample_count";
+
+    private static final String LIST_PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = ?";
+
+    // Интервалы группировки выравниваются от начала эпохи
+    private static final String BUCKET_EXPR =
+            "timestamp 'epoch' + floor(extract(epoch from %s)::float8 / ?::int8) * ?::int8 * interval '1 second'";
+
+    private static final String RAW_SERIES_SQL =
+            "SELECT " + BUCKET_EXPR.formatted("ts") + " AS bucket, " +
+            "MIN(value), MAX(value), SUM(value), COUNT(*) " +
+            "FROM sensor_readings WHERE bus_id = ? AND sensor_type = ? AND ts >= ? AND ts < ? " +
+            "GROUP BY 1 ORDER BY 1";
+
+    private static final String ROLLUP_SERIES_SQL =
+            "SELECT " + BUCKET_EXPR.formatted("bucket") + " AS step_bucket, " +
+            "MIN(min_value), MAX(max_value), SUM(sum_value), SUM(sample_count) " +
+            "FROM %s WHERE bus_id = ? AND sensor_type = ? AND bucket >= ? AND bucket < ? " +
+            "GROUP BY 1 ORDER BY 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private static String rollupTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
+               "bus_id BIGINT NOT NULL, sensor_type VARCHAR(32) NOT NULL, bucket TIMESTAMP NOT NULL, " +
+               "min_value DOUBLE PRECISION NOT NULL, max_value DOUBLE PRECISION NOT NULL, " +
+               "sum_value DOUBLE PRECISION NOT NULL, sample_count BIGINT NOT NULL, " +
+               "PRIMARY KEY (bus_id, sensor_type, bucket))";
+    }
+
+    public void createSchema() {
+        SCHEMA_SQL.forEach(jdbcTemplate::execute);
+    }
+
+    /**
+     * Создать секцию сырых показаний за день, если ее еще нет
+     */
+    public void createPartition(LocalDate day) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(day) +
+                " PARTITION OF " + READINGS_TABLE +
+                " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+    }
+
+    /**
+     * Дни, за которые существуют секции
+     */
+    public List<LocalDate> findPartitionDays() {
+        return jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, READINGS_TABLE).stream()
+                .filter(name -> name.startsWith(READINGS_TABLE + "_p"))
+                .map(name -> LocalDate.parse(name.substring(READINGS_TABLE.length() + 2), PARTITION_SUFFIX))
+                .toList();
+    }
+
+    public void dropPartition(LocalDate day) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(day));
+    }
+
+    public int deleteRollupsBefore(SeriesResolution resolution, LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM " + resolution.getTable() + " WHERE bucket < ?", cutoff);
+    }
+
+    /**
+     * Удалить порцию строк sensor_data старше cutoff (индекс по timestamp)
+     */
+    public int deleteSensorDataBefore(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.update("DELETE FROM sensor_data WHERE id IN " +
+                "(SELECT id FROM sensor_data WHERE timestamp < ? LIMIT ?)", cutoff, limit);
+    }
+
+    public void insertReadings(List<SensorReading> readings) {
+        if (readings.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_READING_SQL, readings, readings.size(), (ps, reading) -> {
+            ps.setLong(1, reading.busId());
+            ps.setString(2, reading.sensorType().name());
+            ps.setObject(3, reading.timestamp());
+            ps.setDouble(4, reading.value());
+            ps.setBoolean(5, reading.anomaly());
+        });
+    }
+
+    /**
+     * Слить агрегаты в таблицу уровня resolution (MINUTE или HOUR)
+     */
+    public void upsertRollups(SeriesResolution resolution, List<SensorRollupRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP_SQL.formatted(resolution.getTable()), rows, rows.size(),
+                (ps, row) -> {
+                    ps.setLong(1, row.busId());
+                    ps.setString(2, row.sensorType().name());
+                    ps.setObject(3, row.bucket());
+                    ps.setDouble(4, row.min());
+                    ps.setDouble(5, row.max());
+                    ps.setDouble(6, row.sum());
+                    ps.setLong(7, row.count());
+                });
+    }
+
+    /**
+     * Ряд за [from, to) с шагом stepSeconds из указанного уровня хранения
+     */
+    public List<SensorSeriesPoint> findSeries(SeriesResolution source, Long busId, SensorType type,
+            LocalDateTime from, LocalDateTime to, long stepSeconds) {
+        String sql = source == SeriesResolution.RAW
+                ? RAW_SERIES_SQL
+                : ROLLUP_SERIES_SQL.formatted(source.getTable());
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            long count = rs.getLong(5);
+            return new SensorSeriesPoint(
+                    rs.getObject(1, LocalDateTime.class),
+                    rs.getDouble(2),
+                    rs.getDouble(3),
+                    count > 0 ? rs.getDouble(4) / count : 0.0,
+                    count);
+        }, stepSeconds, stepSeconds, busId, type.name(), from, to);
+    }
+
+    private static String partitionName(LocalDate day) {
+        return READINGS_TABLE + "_p" + PARTITION_SUFFIX.format(day);
+    }
+}
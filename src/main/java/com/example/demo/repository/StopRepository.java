@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,4 +19,8 @@ public interface StopRepository extends JpaRepository<Stop, Long> {
            "6371 * acos(cos(radians(:lat)) * cos(radians(s.lat)) * " +
            "cos(radians(s.lon) - radians(:lon)) + sin(radians(:lat)) * sin(radians(s.lat))) < 2")
     List<Stop> findNearbyStops(@Param("lat") Double lat, @Param("lon") Double lon);
+    
+    // Какие из переданных ID существуют
+    @Query("SELECT s.id FROM Stop s WHERE s.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.example.demo.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.model.Token;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Запись выданных токенов одним многострочным INSERT через JDBC.
+ * IDENTITY-ключ заставляет Hibernate вставлять каждую строку отдельным запросом.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TokenBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO token (type, value, expiry_date, disabled, user_id) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int insertAll(List<Token> tokens) {
+        if (tokens.isEmpty()) {
+            return 0;
+        }
+        String sql = INSERT_SQL + String.join(", ", Collections.nCopies(tokens.size(), ROW));
+        return jdbcTemplate.update(sql, ps -> {
+            int index = 1;
+            for (Token token : tokens) {
+                // TokenType хранится как порядковый номер (EnumType.ORDINAL по умолчанию)
+                ps.setShort(index++, (short) token.getType().ordinal());
+                ps.setString(index++, token.getValue());
+                ps.setObject(index++, token.getExpiryDate());
+                ps.setBoolean(index++, token.isDisabled());
+                ps.setLong(index++, token.getUser().getId());
+            }
+        });
+    }
+}
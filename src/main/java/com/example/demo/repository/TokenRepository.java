@@ -1,11 +1,30 @@
 package com.example.demo.repository;
 
+import java.time.LocalDateTime;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
 import com.example.demo.model.Token;
 
 @Repository
 public interface TokenRepository 
     extends JpaRepository<Token, Long> {
 
-}
\ No newline at end of file
+    // Отзыв всех действующих токенов пользователя одним запросом
+    @Transactional
+    @Modifying
+    @Query("UPDATE Token t SET t.disabled = true WHERE t.user.id = :userId AND t.disabled = false")
+    int disableAllByUserId(@Param("userId") Long userId);
+
+    // Удаление истекших токенов порциями, чтобы не держать долгую блокировку
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM token WHERE id IN " +
+           "(SELECT id FROM token WHERE expiry_date < :now LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -2,14 +2,41 @@ package com.example.demo.repository;
 
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.example.demo.dto.UserTokensNotBefore;
 import com.example.demo.model.User;
 
 @Repository
 public interface UserRepository 
         extends JpaRepository<User, Long> {
         Optional<User> findByUsername(String username);
-}
\ No newline at end of file
+
+        // Пользователь вместе с ролью и правами одним запросом (вход в систему)
+        @Query("SELECT u FROM User u LEFT JOIN FETCH u.role r LEFT JOIN FETCH r.permissions " +
+               "WHERE u.username = :username")
+        Optional<User> findWithPermissionsByUsername(@Param("username") String username);
+
+        @Query("SELECT new com.example.demo.dto.UserTokensNotBefore(u.username, u.tokensNotBefore) " +
+               "FROM User u WHERE u.tokensNotBefore IS NOT NULL")
+        List<UserTokensNotBefore> findTokensNotBefore();
+
+        @Transactional
+        @Modifying
+        @Query("UPDATE User u SET u.tokensNotBefore = :notBefore WHERE u.id = :userId")
+        int updateTokensNotBefore(@Param("userId") Long userId, @Param("notBefore") LocalDateTime notBefore);
+
+        // Границы старше срока жизни любого токена больше ничего не отсекают
+        @Transactional
+        @Modifying
+        @Query("UPDATE User u SET u.tokensNotBefore = NULL WHERE u.tokensNotBefore < :cutoff")
+        int clearTokensNotBeforeBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,4 +1,6 @@
 package com.example.demo.service;
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.http.ResponseEntity;
 import com.example.demo.dto.LoginRequest;
 import com.example.demo.dto.LoginResponse;
@@ -6,7 +8,7 @@ import com.example.demo.dto.UserLoggedDto;
 
 
 public interface AuthService {
-    ResponseEntity<LoginResponse> login(LoginRequest loginRequest, String accessToken, String refreshToken);
+    CompletableFuture<ResponseEntity<LoginResponse>> login(LoginRequest loginRequest);
 
     ResponseEntity<LoginResponse> refresh(String refreshToken);
 
@@ -0,0 +1,214 @@
+package com.example.demo.service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dto.BusPassengerStats;
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.model.Bus;
+import com.example.demo.repository.PassengerCountRepository;
+import com.example.demo.repository.PassengerRollupBatchRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Текущая загруженность автобусов (вошло - вышло за сервисные сутки).
+ * Счетчики обновляются после фиксации каждой записи и обнуляются в полночь.
+ * Начальное заполнение читается по снимку БД, как перестройка PassengerLoadProfileService:
+ * изменения, пришедшие во время чтения, переносятся в новые счетчики, только если снимок их не видел.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BusOccupancyTracker {
+
+    private final PassengerCountRepository passengerCountRepository;
+    private final BusService busService;
+    private final PassengerRollupBatchRepository rollupBatchRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private record DayCounters(LocalDate day, Map<Long, AtomicInteger> loads) {}
+
+    private record CommittedDeltas(List<PassengerCountDelta> deltas, Long transactionId) {}
+
+    private volatile DayCounters counters = new DayCounters(LocalDate.now(), new ConcurrentHashMap<>());
+    // Снимок, по которому заполнены счетчики; null - начального заполнения еще не было
+    private CommitSnapshot countersSnapshot;
+    // Изменения, зафиксированные во время начального заполнения; null - заполнение не идет
+    private Queue<CommittedDeltas> pending;
+
+    // Приращения идут под read-блокировкой, замена счетчиков после заполнения - под write-блокировкой
+    private final ReadWriteLock warmStartLock = new ReentrantReadWriteLock();
+
+    private TransactionTemplate snapshotTransaction;
+
+    @PostConstruct
+    public void init() {
+        snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshotTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Начальное заполнение из записей за сегодня
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        warmStartLock.writeLock().lock();
+        try {
+            pending = new ConcurrentLinkedQueue<>();
+        } finally {
+            warmStartLock.writeLock().unlock();
+        }
+
+        try {
+            LocalDate today = LocalDate.now();
+            record Loaded(CommitSnapshot snapshot, List<BusPassengerStats> stats) {}
+            Loaded loaded = snapshotTransaction.execute(status -> new Loaded(
+                    CommitSnapshot.parse(rollupBatchRepository.currentSnapshot()),
+                    passengerCountRepository.aggregateByBus(today.atStartOfDay(), today.atTime(LocalTime.MAX))));
+
+            DayCounters loadedDay = new DayCounters(today, new ConcurrentHashMap<>());
+            for (BusPassengerStats stats : loaded.stats()) {
+                loadedDay.loads().put(stats.busId(), new AtomicInteger((int) (stats.entered() - stats.exited())));
+            }
+
+            warmStartLock.writeLock().lock();
+            try {
+                int replayed = 0;
+                for (CommittedDeltas committed : pending) {
+                    if (!loaded.snapshot().sees(committed.transactionId())) {
+                        apply(committed.deltas(), loadedDay);
+                        replayed++;
+                    }
+                }
+                counters = loadedDay;
+                countersSnapshot = loaded.snapshot();
+                log.info("Счетчики загруженности инициализированы: {} автобусов, {} изменений после снимка",
+                        loadedDay.loads().size(), replayed);
+            } finally {
+                warmStartLock.writeLock().unlock();
+            }
+        } finally {
+            warmStartLock.writeLock().lock();
+            pending = null;
+            warmStartLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Обнуление на границе сервисных суток
+     */
+    @Scheduled(cron = "${prediction.occupancy.reset-cron:0 0 0 * * *}")
+    public void resetDay() {
+        current();
+    }
+
+    /**
+     * Вызывается в транзакции записи: номер транзакции запоминается до фиксации,
+     * счетчики обновляются после нее
+     */
+    @EventListener
+    public void onPassengerCountsChanged(PassengerCountsChangedEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyCommitted(event.deltas(), null);
+            return;
+        }
+        long transactionId = rollupBatchRepository.currentTransactionId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    applyCommitted(event.deltas(), transactionId);
+                } catch (RuntimeException e) {
+                    log.error("Failed to update bus occupancy", e);
+                }
+            }
+        });
+    }
+
+    private void applyCommitted(List<PassengerCountDelta> deltas, Long transactionId) {
+        warmStartLock.readLock().lock();
+        try {
+            // Изменение уже учтено, если счетчики заполнены по снимку, видевшему его транзакцию
+            if (countersSnapshot == null || !countersSnapshot.sees(transactionId)) {
+                apply(deltas, current());
+            }
+            if (pending != null) {
+                pending.add(new CommittedDeltas(deltas, transactionId));
+            }
+        } finally {
+            warmStartLock.readLock().unlock();
+        }
+    }
+
+    private static void apply(List<PassengerCountDelta> deltas, DayCounters day) {
+        for (PassengerCountDelta delta : deltas) {
+            // Опоздавшие записи за прошлые сутки на текущую загрузку не влияют
+            if (!delta.timestamp().toLocalDate().equals(day.day())) {
+                continue;
+            }
+            day.loads().computeIfAbsent(delta.busId(), id -> new AtomicInteger())
+                    .addAndGet(delta.net());
+        }
+    }
+
+    /**
+     * Загруженность одного автобуса, не меньше нуля
+     */
+    public int getLoad(Long busId) {
+        AtomicInteger load = current().loads().get(busId);
+        return load != null ? Math.max(0, load.get()) : 0;
+    }
+
+    /**
+     * Загруженность всех автобусов одним снимком
+     */
+    public Map<Long, Integer> getAllLoads() {
+        Map<Long, AtomicInteger> loads = current().loads();
+        Map<Long, Integer> result = new LinkedHashMap<>();
+        for (Bus bus : busService.getAll()) {
+            AtomicInteger load = loads.get(bus.getId());
+            result.put(bus.getId(), load != null ? Math.max(0, load.get()) : 0);
+        }
+        return result;
+    }
+
+    private DayCounters current() {
+        DayCounters day = counters;
+        LocalDate today = LocalDate.now();
+        if (!day.day().equals(today)) {
+            synchronized (this) {
+                day = counters;
+                if (!day.day().equals(today)) {
+                    day = new DayCounters(today, new ConcurrentHashMap<>());
+                    counters = day;
+                }
+            }
+        }
+        return day;
+    }
+}
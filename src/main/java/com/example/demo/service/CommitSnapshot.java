@@ -0,0 +1,23 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Снимок PostgreSQL (pg_current_snapshot): транзакция видна, если зафиксирована до его создания
+ */
+record CommitSnapshot(long xmin, long xmax, Set<Long> inProgress) {
+
+    static CommitSnapshot parse(String text) {
+        String[] parts = text.split(":", -1);
+        Set<Long> inProgress = parts[2].isEmpty() ? Set.of()
+                : Set.copyOf(Arrays.stream(parts[2].split(",")).map(Long::valueOf).toList());
+        return new CommitSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+    }
+
+    // Номер неизвестен (запись вне транзакции) - считаем, что снимок ее не видел
+    boolean sees(Long transactionId) {
+        return transactionId != null
+                && (transactionId < xmin || (transactionId < xmax && !inProgress.contains(transactionId)));
+    }
+}
@@ -1,33 +1,117 @@
 package com.example.demo.service;
 
 import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.demo.dto.CsvImportResult;
-import com.example.demo.model.Bus;
-import com.example.demo.model.SensorData;
+import com.example.demo.dto.ImportProgress;
+import com.example.demo.event.SensorReading;
 import com.example.demo.model.SensorType;
+import com.example.demo.repository.BusRepository;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Импорт показаний датчиков из CSV конвейером:
+ * чтение порций из файла -> параллельный разбор и проверка -> запись порций через JDBC batch.
+ * Каждая порция пишется своей транзакцией, в памяти держится не больше max-in-flight порций.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class CsvImportService {
     private final SensorService sensorService;
-    private final BusService busService;
+    private final BusRepository busRepository;
+
+    @Value("${import.csv.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${import.csv.parallelism:4}")
+    private int parallelism;
+
+    @Value("${import.csv.max-in-flight:8}")
+    private int maxInFlight;
+
+    @Value("${import.csv.max-errors:1000}")
+    private int maxErrors;
+
+    // Размер сегмента при повторной обработке через отображение файла в память
+    @Value("${import.csv.mmap-segment-bytes:4194304}")
+    private long segmentBytes;
+
+    // Заголовок длиннее считается ошибкой формата, а не читается в память целиком
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    private ExecutorService validationPool;
+
+    // relative - номера строк считаются от начала сегмента файла, а не от начала файла
+    private record ValidatedChunk(long firstRow, long lastRow, boolean relative,
+            List<SensorReading> readings, List<RowError> errors) {}
+
+    private record RowError(long row, String message) {}
+
+    // Счетчики одного импорта, меняются только в потоке записи
+    private static final class ImportState {
+        // Повторная обработка: уже сохраненные показания пропускаются и считаются в skipped
+        final boolean skipStored;
+        long rowsRead;
+        long imported;
+        long skipped;
+        long failed;
+        int chunks;
+        final List<String> errors = new ArrayList<>();
+
+        ImportState(boolean skipStored) {
+            this.skipStored = skipStored;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        validationPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "csv-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        validationPool.shutdownNow();
+    }
 
     private CSVFormat createCsvFormat() {
         return CSVFormat.DEFAULT.builder()
@@ -38,88 +122,300 @@ public class CsvImportService {
                 .build();
     }
 
+    /**
+     * Импорт загруженного файла: multipart сначала сохраняется во временный файл на диске
+     */
     public CsvImportResult importProductsFromCsv(MultipartFile file) {
-        List<SensorData> valid = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
+        Path spooled = null;
+        try {
+            spooled = spoolToDisk(file);
+            return importFromCsv(spooled, progress -> log.debug("CSV import progress: {}", progress));
+        } catch (IOException e) {
+            String message = "Failed to read CSV file: " + e.getMessage();
+            log.error(message, e);
+            return new CsvImportResult(0, 1, List.of(message));
+        } finally {
+            deleteQuietly(spooled);
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
+    /**
+     * Копия загруженного файла во временном каталоге; удаляет ее вызывающий
+     */
+    public Path spoolToDisk(MultipartFile file) throws IOException {
+        Path spooled = Files.createTempFile("sensor-import-", ".csv");
+        try {
+            file.transferTo(spooled.toFile());
+            return spooled;
+        } catch (IOException e) {
+            deleteQuietly(spooled);
+            throw e;
+        }
+    }
+
+    /**
+     * Импорт CSV-файла с диска; progress вызывается после записи каждой порции
+     */
+    public CsvImportResult importFromCsv(Path path, Consumer<ImportProgress> progress) {
+        // ID автобусов загружаются один раз вместо запроса на каждую строку
+        Set<Long> knownBuses = Set.copyOf(busRepository.findAllIds());
+        ImportState state = new ImportState(false);
+        Deque<Future<ValidatedChunk>> inFlight = new ArrayDeque<>();
+        String readFailure = null;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
                 CSVParser csvParser = new CSVParser(reader, createCsvFormat())) {
+            List<CSVRecord> chunk = new ArrayList<>(chunkSize);
             for (CSVRecord csvRecord : csvParser) {
-                processCsv(csvRecord, valid, errors);
+                chunk.add(csvRecord);
+                if (chunk.size() >= chunkSize) {
+                    inFlight.add(submit(chunk, knownBuses));
+                    chunk = new ArrayList<>(chunkSize);
+                    while (inFlight.size() >= maxInFlight) {
+                        write(inFlight.poll(), state, progress);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                inFlight.add(submit(chunk, knownBuses));
             }
         } catch (Exception e) {
-            String message = "Failed to read CSV file: " + e.getMessage();
-            errors.add(message);
-            log.error(message, e);
+            readFailure = "Failed to read CSV file: " + e.getMessage();
+            log.error(readFailure, e);
         }
 
-        if (!valid.isEmpty()) {
-            try {
-                sensorService.saveAllSensorData(valid);
-            } catch (Exception e) {
-                String msg = "Failed to save sensor data: " + e.getMessage();
-                errors.add(msg);
-                log.error(msg, e);
+        return finish(state, inFlight, readFailure, progress);
+    }
+
+    /**
+     * Повторная обработка сохраненного CSV-файла: файл отображается в память сегментами
+     * по mmap-segment-bytes, границы сдвигаются до конца строки, сегменты разбираются параллельно.
+     * Переводы строк внутри кавычек в этом режиме не поддерживаются.
+     */
+    public CsvImportResult importFromMappedCsv(Path path, Consumer<ImportProgress> progress) {
+        Set<Long> knownBuses = Set.copyOf(busRepository.findAllIds());
+        ImportState state = new ImportState(true);
+        Deque<Future<ValidatedChunk>> inFlight = new ArrayDeque<>();
+        String readFailure = null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = nextLineStart(channel, 0, size);
+            CSVFormat format = segmentFormat(readHeader(channel, start));
+            while (start < size) {
+                long end = start + segmentBytes >= size ? size : nextLineStart(channel, start + segmentBytes, size);
+                // Отображение остается действительным и после закрытия канала
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                inFlight.add(validationPool.submit(() -> validate(parseSegment(segment, format), knownBuses, true)));
+                while (inFlight.size() >= maxInFlight) {
+                    write(inFlight.poll(), state, progress);
+                }
+                start = end;
             }
+        } catch (Exception e) {
+            readFailure = "Failed to read CSV file: " + e.getMessage();
+            log.error(readFailure, e);
         }
-        return new CsvImportResult(valid.size(), errors.size(), errors);
+
+        return finish(state, inFlight, readFailure, progress);
     }
 
-    private void processCsv(CSVRecord csvRecord, List<SensorData> valid, List<String> errors) {
-        try {
-            SensorData sensorData = new SensorData();
+    private CsvImportResult finish(ImportState state, Deque<Future<ValidatedChunk>> inFlight, String readFailure,
+            Consumer<ImportProgress> progress) {
+        // Дописываем уже прочитанные порции, даже если чтение оборвалось
+        while (!inFlight.isEmpty()) {
+            write(inFlight.poll(), state, progress);
+        }
+        if (readFailure != null) {
+            addError(state, readFailure);
+            state.failed++;
+        }
+
+        log.info("CSV import finished: {} rows imported, {} already stored, {} failed, {} chunks",
+                state.imported, state.skipped, state.failed, state.chunks);
+        return new CsvImportResult((int) state.imported, (int) state.failed, (int) state.skipped, state.errors);
+    }
+
+    private Future<ValidatedChunk> submit(List<CSVRecord> chunk, Set<Long> knownBuses) {
+        return validationPool.submit(() -> validate(chunk, knownBuses, false));
+    }
 
-            // busId
-            String busIdStr = csvRecord.get("busId");
-            if (busIdStr == null || busIdStr.isBlank()) {
-                throw new IllegalArgumentException("busId is missing");
+    // Начало строки, следующей за позицией from (или конец файла)
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
             }
-            Long busId = Long.parseLong(busIdStr);
-            Bus bus = busService.getBusById(busId)
-                    .orElseThrow(() -> new IllegalArgumentException("Bus not found: " + busId));
-            sensorData.setBus(bus);
-
-            // timestamp
-            String timestampStr = csvRecord.get("timestamp");
-            if (timestampStr == null || timestampStr.isBlank()) {
-                throw new IllegalArgumentException("timestamp is missing");
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
             }
-            sensorData.setTimestamp(LocalDateTime.parse(timestampStr));
+            position += read;
+        }
+        return size;
+    }
 
-            // sensortype
-            String sensorTypeStr = csvRecord.get("sensorType");
-            if (sensorTypeStr == null || sensorTypeStr.isBlank()) {
-                throw new IllegalArgumentException("sensorType is missing");
+    // Заголовок разбирается тем же форматом, что и при потоковом импорте (trim, регистр)
+    private List<String> readHeader(FileChannel channel, long headerEnd) throws IOException {
+        if (headerEnd > MAX_HEADER_BYTES) {
+            throw new IllegalArgumentException("CSV header exceeds " + MAX_HEADER_BYTES + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) headerEnd);
+        int read;
+        do {
+            read = channel.read(buffer, buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        buffer.flip();
+        try (CSVParser parser = CSVParser.parse(StandardCharsets.UTF_8.decode(buffer).toString(), createCsvFormat())) {
+            List<String> header = parser.getHeaderNames();
+            if (header.isEmpty()) {
+                throw new IllegalArgumentException("CSV header is missing");
             }
-            SensorType sensorType = SensorType.valueOf(sensorTypeStr.trim().toUpperCase());
-            sensorData.setSensorType(sensorType);
+            return header;
+        }
+    }
+
+    // Сегменты после первого идут без заголовка - колонки задаются явно
+    private CSVFormat segmentFormat(List<String> header) {
+        return createCsvFormat().builder()
+                .setHeader(header.toArray(String[]::new))
+                .setSkipHeaderRecord(false)
+                .build();
+    }
+
+    private static List<CSVRecord> parseSegment(MappedByteBuffer segment, CSVFormat format) throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.decode(segment);
+        try (CSVParser parser = new CSVParser(
+                new CharArrayReader(chars.array(), chars.arrayOffset(), chars.remaining()), format)) {
+            return parser.getRecords();
+        }
+    }
 
-            // value
-            String valueStr = csvRecord.get("value");
-            if (valueStr == null || valueStr.isBlank()) {
-                throw new IllegalArgumentException("value is missing");
+    private ValidatedChunk validate(List<CSVRecord> chunk, Set<Long> knownBuses, boolean relative) {
+        List<SensorReading> readings = new ArrayList<>(chunk.size());
+        List<RowError> errors = new ArrayList<>();
+        for (CSVRecord csvRecord : chunk) {
+            try {
+                readings.add(processCsv(csvRecord, knownBuses));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                errors.add(new RowError(csvRecord.getRecordNumber(), "invalid data - " + e.getMessage()));
+                log.debug("Row {}: invalid data - {}", csvRecord.getRecordNumber(), e.getMessage());
+            } catch (Exception e) {
+                errors.add(new RowError(csvRecord.getRecordNumber(), "unexpected error - " + e.getMessage()));
+                log.error("Row {}: unexpected error - {}", csvRecord.getRecordNumber(), e.getMessage(), e);
             }
-            sensorData.setValue(Double.parseDouble(valueStr));
-
-            // anomaly
-            String anomalyStr = csvRecord.isMapped("anomaly") ? csvRecord.get("anomaly") : null;
-            if (anomalyStr != null && !anomalyStr.isBlank()) {
-                sensorData.setAnomaly(Boolean.parseBoolean(anomalyStr));
-            } else {
-                // check for anomaly
-                sensorData.setAnomaly(sensorService.checkForAnomaly(sensorData));
+        }
+        if (chunk.isEmpty()) {
+            return new ValidatedChunk(0, 0, relative, readings, errors);
+        }
+        return new ValidatedChunk(chunk.get(0).getRecordNumber(), chunk.get(chunk.size() - 1).getRecordNumber(),
+                relative, readings, errors);
+    }
+
+    private void write(Future<ValidatedChunk> pending, ImportState state, Consumer<ImportProgress> progress) {
+        ValidatedChunk chunk;
+        try {
+            chunk = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addError(state, "Import interrupted");
+            return;
+        } catch (ExecutionException e) {
+            addError(state, "Failed to validate chunk: " + e.getCause().getMessage());
+            log.error("Failed to validate CSV chunk", e.getCause());
+            return;
+        }
+
+        int errorsBefore = state.errors.size();
+        // Сегменты пишутся по порядку, поэтому их строки отсчитываются от уже прочитанных
+        long base = chunk.relative() ? state.rowsRead : 0;
+        state.rowsRead = Math.max(state.rowsRead, base + chunk.lastRow());
+        state.failed += chunk.errors().size();
+        chunk.errors().forEach(error -> addError(state,
+                String.format("Row %d: %s", base + error.row(), error.message())));
+
+        // Большие сегменты пишутся транзакциями по chunk-size строк
+        List<SensorReading> readings = chunk.readings();
+        for (int from = 0; from < readings.size(); from += chunkSize) {
+            List<SensorReading> batch = readings.subList(from, Math.min(from + chunkSize, readings.size()));
+            try {
+                int written = sensorService.saveReadings(batch, state.skipStored);
+                state.imported += written;
+                state.skipped += batch.size() - written;
+            } catch (Exception e) {
+                String msg = String.format("Rows %d-%d: failed to save sensor data - %s",
+                        base + chunk.firstRow(), base + chunk.lastRow(), e.getMessage());
+                addError(state, msg);
+                state.failed += batch.size();
+                log.error(msg, e);
             }
+        }
+        state.chunks++;
+        progress.accept(new ImportProgress(state.rowsRead, state.imported, state.failed, state.skipped, state.chunks,
+                List.copyOf(state.errors.subList(errorsBefore, state.errors.size()))));
+    }
 
-            valid.add(sensorData);
-        } catch (IllegalArgumentException | DateTimeParseException e) {
-            String msg = String.format("Row %d: invalid data - %s", csvRecord.getRecordNumber(), e.getMessage());
-            errors.add(msg);
-            log.warn(msg);
-        } catch (Exception e) {
-            String msg = String.format("Row %d: unexpected error - %s", csvRecord.getRecordNumber(), e.getMessage());
-            errors.add(msg);
-            log.error(msg, e);
+    private SensorReading processCsv(CSVRecord csvRecord, Set<Long> knownBuses) {
+        // busId
+        String busIdStr = csvRecord.get("busId");
+        if (busIdStr == null || busIdStr.isBlank()) {
+            throw new IllegalArgumentException("busId is missing");
+        }
+        Long busId = Long.parseLong(busIdStr);
+        if (!knownBuses.contains(busId)) {
+            throw new IllegalArgumentException("Bus not found: " + busId);
+        }
+
+        // timestamp
+        String timestampStr = csvRecord.get("timestamp");
+        if (timestampStr == null || timestampStr.isBlank()) {
+            throw new IllegalArgumentException("timestamp is missing");
+        }
+        LocalDateTime timestamp = LocalDateTime.parse(timestampStr);
+
+        // sensortype
+        String sensorTypeStr = csvRecord.get("sensorType");
+        if (sensorTypeStr == null || sensorTypeStr.isBlank()) {
+            throw new IllegalArgumentException("sensorType is missing");
+        }
+        SensorType sensorType = SensorType.valueOf(sensorTypeStr.trim().toUpperCase());
+
+        // value
+        String valueStr = csvRecord.get("value");
+        if (valueStr == null || valueStr.isBlank()) {
+            throw new IllegalArgumentException("value is missing");
+        }
+        double value = Double.parseDouble(valueStr);
+
+        // anomaly
+        String anomalyStr = csvRecord.isMapped("anomaly") ? csvRecord.get("anomaly") : null;
+        boolean anomaly = anomalyStr != null && !anomalyStr.isBlank()
+                ? Boolean.parseBoolean(anomalyStr)
+                : sensorService.checkForAnomaly(sensorType, value);
+
+        return new SensorReading(busId, sensorType, timestamp, value, anomaly);
+    }
+
+    // Сообщений об ошибках храним не больше maxErrors, счетчик failed учитывает все
+    private void addError(ImportState state, String message) {
+        if (state.errors.size() < maxErrors) {
+            state.errors.add(message);
+        }
+    }
+
+    public static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}", path, e);
         }
     }
-}
\ No newline at end of file
+}
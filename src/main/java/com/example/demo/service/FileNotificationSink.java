@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Уведомления в локальный файл (notification.sink=file): одна строка на сообщение,
+ * только дозапись. Строки копятся в ограниченной очереди, отдельный поток пишет их пачками;
+ * при переполнении очереди сообщения отбрасываются.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "notification.sink", havingValue = "file")
+@RequiredArgsConstructor
+public class FileNotificationSink implements NotificationSink {
+
+    private static final int WRITE_BATCH = 512;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notification.file.path:logs/notifications.log}")
+    private String path;
+
+    @Value("${notification.file.queue-capacity:10000}")
+    private int capacity;
+
+    private BlockingQueue<String> queue;
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path file = Paths.get(path).toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("notification.sink.queue.depth", queue, BlockingQueue::size)
+                .tag("sink", "file")
+                .description("Уведомления в очереди на запись в файл")
+                .register(meterRegistry);
+        droppedCounter = meterRegistry.counter("notification.sink.dropped", "sink", "file");
+
+        running = true;
+        writer = new Thread(this::runWriter, "notification-file-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("File notification sink started: {}", file);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        channel.close();
+    }
+
+    @Override
+    public void publish(String message) {
+        // Переводы строк экранируются: одна запись - одна строка файла
+        String line = LocalDateTime.now() + " " + message.replace("\r", "").replace("\n", "\\n") + "\n";
+        if (!queue.offer(line)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void runWriter() {
+        List<String> batch = new ArrayList<>(WRITE_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, WRITE_BATCH - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Failed to append {} notifications to {}", batch.size(), path, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<String> lines) throws IOException {
+        StringBuilder chunk = new StringBuilder();
+        for (String line : lines) {
+            chunk.append(line);
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(chunk.toString());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,22 +1,44 @@
 package com.example.demo.service;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.demo.exception.AppException;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 import org.springframework.beans.factory.annotation.Value;
 
+/**
+ * Хранилище файлов по содержимому: имя файла - SHA-256 его байтов,
+ * одинаковые загрузки хранятся одной копией.
+ * Загрузка переносит временный файл multipart на место (переименованием, если он уже на диске),
+ * хэш считается чтением через FileChannel в прямой буфер;
+ * выдача - через FileChannel.transferTo без копирования в кучу.
+ */
 @Service
 public class FileService {
     @Value("${upload.path}")
     private String uploadDir;
 
+    @Value("${upload.buffer-size:65536}")
+    private int bufferSize;
+
     public String storeFile(MultipartFile file) throws IOException {
         Path uploadPath = Paths.get(uploadDir);
 
@@ -30,10 +52,73 @@ public class FileService {
             Files.createDirectories(uploadPath);
         }
 
-        // Unique filename
-        String filename = UUID.randomUUID().toString() + ".csv";
-        Path target = uploadPath.resolve(filename);
-        Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
-        return target.toString();
+        Path temp = Files.createTempFile(uploadPath, "upload-", ".part").toAbsolutePath();
+        try {
+            // transferTo(File) - Part.write: файл больше file-size-threshold уже на диске и только переименовывается
+            file.transferTo(temp.toFile());
+            String hash = hashOf(temp);
+            Path target = uploadPath.resolve(hash + ".csv");
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Такой файл уже загружен - оставляем существующую копию
+            }
+            return target.toString();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Путь к сохраненному файлу; файлы вне каталога загрузок не выдаются
+     */
+    public Path resolveStored(String filePath) {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        if (!path.startsWith(root) || !Files.isRegularFile(path)) {
+            throw new AppException(HttpStatus.NOT_FOUND, "File not found");
+        }
+        return path;
+    }
+
+    /**
+     * Отправка count байт файла начиная с position; для сокетов и файлов
+     * transferTo использует sendfile/копирование в ядре
+     */
+    public void transferTo(Path path, long position, long count, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long sent = 0;
+            while (sent < count) {
+                long written = channel.transferTo(position + sent, count - sent, target);
+                if (written <= 0) {
+                    break;
+                }
+                sent += written;
+            }
+        }
+    }
+
+    // Хэш файла; файл сбрасывается на диск до переноса под итоговым именем
+    private String hashOf(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            channel.force(false);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
-}
\ No newline at end of file
+}
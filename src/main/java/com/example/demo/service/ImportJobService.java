@@ -0,0 +1,226 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.demo.dto.CsvImportResult;
+import com.example.demo.dto.ImportJobView;
+import com.example.demo.dto.ImportProgress;
+import com.example.demo.enums.ImportJobStatus;
+import com.example.demo.exception.AppException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Фоновые задачи импорта CSV. Загрузка сохраняется на диск и ставится в очередь,
+ * задачи выполняются на отдельном ограниченном пуле, состояние хранится в памяти
+ * и удаляется через import.jobs.retention-minutes после завершения.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportJobService {
+
+    private final CsvImportService csvImportService;
+
+    @Value("${import.jobs.parallelism:2}")
+    private int parallelism;
+
+    @Value("${import.jobs.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${import.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${import.jobs.error-page-size:100}")
+    private int errorPageSize;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Изменяемое состояние одной задачи: пишет поток импорта, читают запросы опроса
+     */
+    private static final class ImportJob {
+        final String id;
+        final String fileName;
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        final List<String> errors = new ArrayList<>();
+        volatile ImportJobStatus status = ImportJobStatus.QUEUED;
+        volatile ImportProgress progress = new ImportProgress(0, 0, 0, 0, 0, List.of());
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile long startedNanos;
+        volatile long finishedNanos;
+
+        ImportJob(String id, String fileName) {
+            this.id = id;
+            this.fileName = fileName;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "import-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Сохранить загрузку на диск и поставить импорт в очередь, вернуть состояние новой задачи
+     */
+    public ImportJobView submit(MultipartFile file) {
+        Path spooled;
+        try {
+            spooled = csvImportService.spoolToDisk(file);
+        } catch (IOException e) {
+            log.error("Failed to store uploaded file {}", file.getOriginalFilename(), e);
+            throw new AppException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store uploaded file");
+        }
+        return submit(spooled, file.getOriginalFilename(), true);
+    }
+
+    /**
+     * Поставить импорт файла с диска в очередь; deleteAfter - удалить файл по завершении
+     */
+    public ImportJobView submit(Path path, String fileName, boolean deleteAfter) {
+        return submit(path, fileName, deleteAfter, csvImportService::importFromCsv);
+    }
+
+    /**
+     * Повторная обработка сохраненного файла: разбор отображенных в память сегментов параллельно
+     */
+    public ImportJobView submitReprocess(Path path, String fileName) {
+        return submit(path, fileName, false, csvImportService::importFromMappedCsv);
+    }
+
+    private ImportJobView submit(Path path, String fileName, boolean deleteAfter,
+            BiFunction<Path, Consumer<ImportProgress>, CsvImportResult> importer) {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), fileName);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, path, deleteAfter, importer));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            if (deleteAfter) {
+                CsvImportService.deleteQuietly(path);
+            }
+            throw new AppException(HttpStatus.SERVICE_UNAVAILABLE, "Too many import jobs in progress");
+        }
+        log.info("Import job {} queued for {}", job.id, fileName);
+        return view(job, 0, errorPageSize);
+    }
+
+    public ImportJobView getJob(String id, int errorCursor, Integer errorLimit) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            throw new AppException(HttpStatus.NOT_FOUND, "Import job not found: " + id);
+        }
+        int limit = errorLimit != null && errorLimit > 0 ? Math.min(errorLimit, errorPageSize) : errorPageSize;
+        return view(job, Math.max(0, errorCursor), limit);
+    }
+
+    /**
+     * Удаление завершенных задач старше срока хранения
+     */
+    @Scheduled(fixedDelayString = "${import.jobs.purge-interval-ms:300000}")
+    public void purgeFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private void run(ImportJob job, Path path, boolean deleteAfter,
+            BiFunction<Path, Consumer<ImportProgress>, CsvImportResult> importer) {
+        job.startedAt = LocalDateTime.now();
+        job.startedNanos = System.nanoTime();
+        job.status = ImportJobStatus.RUNNING;
+        try {
+            CsvImportResult result = importer.apply(path, progress -> {
+                synchronized (job.errors) {
+                    job.errors.addAll(progress.newErrors());
+                }
+                job.progress = progress;
+            });
+            // Ошибки, не привязанные к порции (например, обрыв чтения), идут в конце списка
+            synchronized (job.errors) {
+                if (result.errors().size() > job.errors.size()) {
+                    job.errors.addAll(result.errors().subList(job.errors.size(), result.errors().size()));
+                }
+            }
+            job.progress = new ImportProgress(job.progress.rowsRead(), result.successCount(),
+                    result.failedCount(), result.skippedCount(), job.progress.chunksWritten(), List.of());
+            job.status = ImportJobStatus.COMPLETED;
+        } catch (Exception e) {
+            log.error("Import job {} failed", job.id, e);
+            synchronized (job.errors) {
+                job.errors.add("Import failed: " + e.getMessage());
+            }
+            job.status = ImportJobStatus.FAILED;
+        } finally {
+            job.finishedNanos = System.nanoTime();
+            job.finishedAt = LocalDateTime.now();
+            if (deleteAfter) {
+                CsvImportService.deleteQuietly(path);
+            }
+        }
+        log.info("Import job {} {}: {}", job.id, job.status, job.progress);
+    }
+
+    private ImportJobView view(ImportJob job, int errorCursor, int errorLimit) {
+        List<String> errors;
+        int from;
+        synchronized (job.errors) {
+            from = Math.min(errorCursor, job.errors.size());
+            int to = Math.min(from + errorLimit, job.errors.size());
+            errors = List.copyOf(job.errors.subList(from, to));
+        }
+        ImportProgress progress = job.progress;
+        return new ImportJobView(job.id, job.fileName, job.status,
+                progress.rowsRead(), progress.rowsImported(), progress.rowsFailed(), progress.rowsSkipped(),
+                progress.chunksWritten(),
+                rowsPerSecond(job, progress),
+                job.submittedAt, job.startedAt, job.finishedAt,
+                from, from + errors.size(), errors);
+    }
+
+    private static double rowsPerSecond(ImportJob job, ImportProgress progress) {
+        if (job.startedNanos == 0) {
+            return 0.0;
+        }
+        long end = job.finishedNanos != 0 ? job.finishedNanos : System.nanoTime();
+        double seconds = Duration.ofNanos(end - job.startedNanos).toMillis() / 1000.0;
+        return seconds > 0 ? progress.rowsRead() / seconds : 0.0;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Уведомления в памяти для нагрузочных тестов (notification.sink=memory):
+ * счетчик и кольцевой буфер последних сообщений без блокировок
+ */
+@Component
+@ConditionalOnProperty(name = "notification.sink", havingValue = "memory")
+public class MemoryNotificationSink implements NotificationSink {
+
+    @Value("${notification.memory.capacity:1000}")
+    private int capacity;
+
+    private final AtomicLong published = new AtomicLong();
+    private AtomicReferenceArray<String> recent;
+
+    @PostConstruct
+    public void init() {
+        recent = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    @Override
+    public void publish(String message) {
+        long sequence = published.getAndIncrement();
+        recent.set((int) (sequence % recent.length()), message);
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Последние сообщения, от старых к новым
+     */
+    public List<String> getRecent() {
+        long end = published.get();
+        long start = Math.max(0, end - recent.length());
+        List<String> result = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            String message = recent.get((int) (sequence % recent.length()));
+            if (message != null) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+}
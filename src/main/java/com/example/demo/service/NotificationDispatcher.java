@@ -0,0 +1,317 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Асинхронная отправка уведомлений.
+ * Сообщения складываются в ограниченную очередь, один поток собирает всплески
+ * в сводки и отправляет их с ограничением частоты (token bucket на каждый чат).
+ * При переполнении очереди сообщения отбрасываются, а их число уходит в следующую сводку.
+ * Одиночное сообщение уходит с разметкой Markdown; сводки, обрезанные сообщения и уведомления
+ * о пропусках - простым текстом, чтобы склейка и обрезка не ломали разметку.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NotificationDispatcher {
+
+    // Максимальная длина текста сообщения Telegram
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String SEPARATOR = "\n\n";
+
+    private final NotificationTransport transport;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notification.queue-capacity:1000}")
+    private int capacity;
+
+    @Value("${notification.digest.max-messages:20}")
+    private int maxDigestMessages;
+
+    @Value("${notification.digest.linger-ms:500}")
+    private long lingerMs;
+
+    @Value("${notification.rate.per-minute:20}")
+    private int ratePerMinute;
+
+    @Value("${notification.rate.burst:3}")
+    private int rateBurst;
+
+    private BlockingQueue<Notification> queue;
+    private Thread sender;
+    private volatile boolean running;
+
+    // Чат -> число отброшенных сообщений, еще не попавших в сводку
+    private final Map<String, AtomicLong> dropped = new ConcurrentHashMap<>();
+    // Используется только потоком отправки
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+
+    private Counter enqueuedCounter;
+    private Counter droppedCounter;
+    private Counter deliveredCounter;
+    private Counter failedCounter;
+    private Timer sendTimer;
+
+    private record Notification(String chatId, String text) {}
+
+    // Текст одной отправки и число уведомлений в ней (строка о пропусках не считается)
+    record Digest(String text, int notifications, boolean markdown) {}
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("notification.queue.depth", queue, BlockingQueue::size)
+                .description("Уведомления в очереди на отправку")
+                .register(meterRegistry);
+        enqueuedCounter = meterRegistry.counter("notification.enqueued");
+        droppedCounter = meterRegistry.counter("notification.dropped");
+        deliveredCounter = meterRegistry.counter("notification.delivered");
+        failedCounter = meterRegistry.counter("notification.failed");
+        sendTimer = Timer.builder("notification.send")
+                .description("Время отправки одного сообщения (сводки)")
+                .register(meterRegistry);
+
+        running = true;
+        sender = new Thread(this::runSender, "notification-dispatcher");
+        sender.setDaemon(true);
+        sender.start();
+        log.info("Notification dispatcher started: capacity={}, rate={}/min, burst={}, transport={}",
+                capacity, ratePerMinute, rateBurst, transport.getClass().getSimpleName());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        sender.join(TimeUnit.SECONDS.toMillis(5));
+        if (sender.isAlive()) {
+            // Поток ждет лимита отправки - остаток очереди теряется
+            sender.interrupt();
+            log.warn("Notification dispatcher stopped with {} queued messages", queue.size());
+        }
+    }
+
+    /**
+     * Поставить сообщение в очередь без ожидания; false - очередь переполнена, сообщение отброшено
+     */
+    public boolean submit(String chatId, String text) {
+        if (queue.offer(new Notification(chatId, text))) {
+            enqueuedCounter.increment();
+            return true;
+        }
+        droppedCounter.increment();
+        dropped.computeIfAbsent(chatId, id -> new AtomicLong()).incrementAndGet();
+        return false;
+    }
+
+    private void runSender() {
+        List<Notification> batch = new ArrayList<>(maxDigestMessages);
+        while (running || !queue.isEmpty()) {
+            try {
+                Notification first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    deliverDropSummaries();
+                    continue;
+                }
+                batch.add(first);
+
+                // Добираем сводку до maxDigestMessages, но не дольше lingerMs
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxDigestMessages) {
+                    queue.drainTo(batch, maxDigestMessages - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxDigestMessages || remaining <= 0) {
+                        break;
+                    }
+                    Notification next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                deliver(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Notification dispatch failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(List<Notification> batch) throws InterruptedException {
+        // Порядок сообщений внутри чата сохраняется
+        Map<String, List<String>> byChat = new LinkedHashMap<>();
+        for (Notification notification : batch) {
+            byChat.computeIfAbsent(notification.chatId(), id -> new ArrayList<>()).add(notification.text());
+        }
+        for (Map.Entry<String, List<String>> entry : byChat.entrySet()) {
+            String chatId = entry.getKey();
+            List<String> texts = entry.getValue();
+            for (Digest digest : toDigests(takeDropSummary(chatId), texts)) {
+                if (send(chatId, digest.text(), digest.markdown())) {
+                    deliveredCounter.increment(digest.notifications());
+                }
+            }
+        }
+    }
+
+    private void deliverDropSummaries() throws InterruptedException {
+        for (String chatId : dropped.keySet()) {
+            String dropSummary = takeDropSummary(chatId);
+            if (dropSummary != null) {
+                send(chatId, dropSummary, false);
+            }
+        }
+    }
+
+    private String takeDropSummary(String chatId) {
+        AtomicLong counter = dropped.get(chatId);
+        long count = counter != null ? counter.getAndSet(0) : 0;
+        return count > 0 ? "⚠️ Пропущено уведомлений: " + count + " (очередь переполнена)" : null;
+    }
+
+    /**
+     * Склейка сообщений в сводки не длиннее лимита Telegram; dropSummary (может быть null) идет первой
+     */
+    static List<Digest> toDigests(String dropSummary, List<String> texts) {
+        if (dropSummary == null && texts.size() == 1 && texts.get(0).length() <= MAX_MESSAGE_LENGTH) {
+            return List.of(new Digest(texts.get(0), 1, true));
+        }
+        List<Digest> digests = new ArrayList<>();
+        StringBuilder digest = new StringBuilder();
+        int notifications = 0;
+        if (texts.size() > 1) {
+            digest.append("📦 Сводка: ").append(texts.size()).append(" уведомлений");
+        }
+        if (dropSummary != null) {
+            append(digest, dropSummary);
+        }
+        for (String text : texts) {
+            String part = truncate(text, MAX_MESSAGE_LENGTH);
+            if (digest.length() > 0 && digest.length() + SEPARATOR.length() + part.length() > MAX_MESSAGE_LENGTH) {
+                if (notifications > 0 || dropSummary != null) {
+                    digests.add(new Digest(digest.toString(), notifications, false));
+                    digest.setLength(0);
+                    notifications = 0;
+                } else {
+                    // В сводке пока только заголовок - обрезаем часть под остаток места
+                    part = truncate(text, MAX_MESSAGE_LENGTH - digest.length() - SEPARATOR.length());
+                }
+            }
+            append(digest, part);
+            notifications++;
+        }
+        digests.add(new Digest(digest.toString(), notifications, false));
+        return digests;
+    }
+
+    private static void append(StringBuilder digest, String part) {
+        if (digest.length() > 0) {
+            digest.append(SEPARATOR);
+        }
+        digest.append(part);
+    }
+
+    // Обрезка не разрывает суррогатную пару (эмодзи)
+    static String truncate(String text, int maxLength) {
+        if (text.length() <= maxLength) {
+            return text;
+        }
+        int end = maxLength - 1;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end) + "…";
+    }
+
+    /**
+     * Отправка с ограничением частоты; false - сообщение не доставлено
+     */
+    private boolean send(String chatId, String text, boolean markdown) throws InterruptedException {
+        buckets.computeIfAbsent(chatId, id -> new TokenBucket(rateBurst, ratePerMinute)).acquire();
+        long started = System.nanoTime();
+        try {
+            transport.send(chatId, text, markdown);
+            return true;
+        } catch (NotificationTransport.RateLimitedException e) {
+            // Лимит получателя строже нашего - ждем и повторяем один раз
+            log.warn("Notification rate limited by transport, retrying in {} s", e.getRetryAfterSeconds());
+            TimeUnit.SECONDS.sleep(e.getRetryAfterSeconds());
+            try {
+                transport.send(chatId, text, markdown);
+                return true;
+            } catch (IOException retryFailure) {
+                failed(chatId, retryFailure);
+                return false;
+            }
+        } catch (IOException e) {
+            failed(chatId, e);
+            return false;
+        } finally {
+            sendTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void failed(String chatId, IOException e) {
+        failedCounter.increment();
+        log.error("Failed to deliver notification to {}: {}", chatId, e.getMessage());
+    }
+
+    /**
+     * Token bucket: burst сообщений подряд, далее не чаще perMinute в минуту
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(int burst, int perMinute) {
+            this.capacity = Math.max(1, burst);
+            this.tokensPerNano = Math.max(1, perMinute) / (double) TimeUnit.MINUTES.toNanos(1);
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        void acquire() throws InterruptedException {
+            refill();
+            if (tokens < 1) {
+                long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+                refill();
+            }
+            tokens -= 1;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.demo.service;
+
+/**
+ * Получатель уведомлений TelegramLoggingService; реализация выбирается notification.sink.
+ * publish не должен блокировать вызывающий поток на сетевом или дисковом вводе-выводе.
+ */
+public interface NotificationSink {
+
+    void publish(String message);
+}
@@ -0,0 +1,30 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+
+/**
+ * Доставка одного сообщения в чат. Вызывается только потоком NotificationDispatcher.
+ */
+public interface NotificationTransport {
+
+    /**
+     * markdown = false - текст уходит как есть, без разбора разметки
+     */
+    void send(String chatId, String text, boolean markdown) throws IOException;
+
+    /**
+     * Получатель ограничил частоту отправки: повторить не раньше чем через retryAfterSeconds
+     */
+    class RateLimitedException extends IOException {
+        private final long retryAfterSeconds;
+
+        public RateLimitedException(long retryAfterSeconds, String message) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
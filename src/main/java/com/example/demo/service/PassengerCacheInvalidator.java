@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.dto.KeysetPage;
+import com.example.demo.dto.PassengerResponseDto;
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.model.Bus;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Инвалидация кэшей пассажиропотока после фиксации записи.
+ * Первая страница ленты сбрасывается, только если запись ее касается: та же остановка/автобус/маршрут
+ * и время записи не старше последней строки страницы (или страница - вся лента).
+ * Выборка за период сбрасывается, только если время записи попадает в период.
+ * Ключи совпадают с ключами @Cacheable в PassengerCountService.
+ */
+@Component
+@RequiredArgsConstructor
+public class PassengerCacheInvalidator {
+
+    private final CacheManager cacheManager;
+    private final BusService busService;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPassengerCountsChanged(PassengerCountsChangedEvent event) {
+        if (event.deltas().isEmpty()) {
+            return;
+        }
+        // Самая поздняя затронутая запись по каждой ленте
+        Map<Object, LocalDateTime> latest = new HashMap<>();
+        Map<Long, Long> routeByBus = new HashMap<>();
+        NavigableSet<LocalDateTime> timestamps = new TreeSet<>();
+        for (PassengerCountDelta delta : event.deltas()) {
+            LocalDateTime timestamp = delta.timestamp();
+            timestamps.add(timestamp);
+            touch(latest, "all", timestamp);
+            touch(latest, List.of("byStop", delta.stopId()), timestamp);
+            touch(latest, List.of("byBus", delta.busId()), timestamp);
+            // Маршрут на момент подсчета и текущий маршрут автобуса могут различаться - учитываем оба
+            if (delta.routeId() != null) {
+                touch(latest, List.of("byRoute", delta.routeId()), timestamp);
+            }
+            Long currentRoute = routeByBus.computeIfAbsent(delta.busId(), this::currentRouteId);
+            if (currentRoute != null) {
+                touch(latest, List.of("byRoute", currentRoute), timestamp);
+            }
+        }
+
+        evictFirstPages(latest);
+        evictPeriods(timestamps);
+    }
+
+    private void evictFirstPages(Map<Object, LocalDateTime> latest) {
+        Map<Object, Object> pages = entries("passengerPages");
+        if (pages == null) {
+            return;
+        }
+        // Ключ страницы - {лента..., limit}: без последнего элемента он совпадает с ключом ленты
+        pages.entrySet().removeIf(entry -> {
+            List<?> key = (List<?>) entry.getKey();
+            Object feed = key.size() == 2 ? key.get(0) : key.subList(0, key.size() - 1);
+            LocalDateTime written = latest.get(feed);
+            return written != null && affects((KeysetPage<?>) entry.getValue(), written);
+        });
+    }
+
+    // Страница меняется, если она и есть вся лента или запись попадает в ее диапазон времени
+    private static boolean affects(KeysetPage<?> page, LocalDateTime written) {
+        if (page.nextCursor() == null || page.items().isEmpty()) {
+            return true;
+        }
+        PassengerResponseDto oldest = (PassengerResponseDto) page.items().get(page.items().size() - 1);
+        return !written.isBefore(oldest.getTimestamp());
+    }
+
+    private void evictPeriods(NavigableSet<LocalDateTime> timestamps) {
+        Map<Object, Object> periods = entries("passengerPeriods");
+        if (periods == null) {
+            return;
+        }
+        // Ключ - {start, end}, границы включены, как в BETWEEN
+        periods.keySet().removeIf(key -> {
+            List<?> range = (List<?>) key;
+            LocalDateTime start = (LocalDateTime) range.get(0);
+            LocalDateTime end = (LocalDateTime) range.get(1);
+            if (start == null || end == null) {
+                return true;
+            }
+            LocalDateTime first = timestamps.ceiling(start);
+            return first != null && !first.isAfter(end);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> entries(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null) {
+            return null;
+        }
+        return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache()).asMap();
+    }
+
+    private Long currentRouteId(Long busId) {
+        Bus bus = busService.getById(busId);
+        return bus != null && bus.getRoute() != null ? bus.getRoute().getId() : null;
+    }
+
+    private static void touch(Map<Object, LocalDateTime> latest, Object feed, LocalDateTime timestamp) {
+        latest.merge(feed, timestamp, (a, b) -> a.isAfter(b) ? a : b);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dto.BusRouteRef;
+import com.example.demo.dto.PassengerBatchResult;
+import com.example.demo.dto.PassengerBatchResult.RowError;
+import com.example.demo.dto.PassengerCountCreateDTO;
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.repository.BusRepository;
+import com.example.demo.repository.PassengerCountBatchRepository;
+import com.example.demo.repository.StopRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Пакетный прием показаний счетчиков (массив JSON или поток NDJSON).
+ * Строки пишутся порциями по passenger.batch.chunk-size через JDBC batch,
+ * каждая порция - в своей транзакции: событие с изменениями публикуется после ее фиксации,
+ * и в памяти не копятся изменения всего потока. При ошибке записи уже зафиксированные порции остаются.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PassengerCountBatchService {
+
+    private final PassengerCountBatchRepository batchRepository;
+    private final BusRepository busRepository;
+    private final StopRepository stopRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${passenger.batch.chunk-size:500}")
+    private int chunkSize;
+
+    private TransactionTemplate chunkTransaction;
+
+    @PostConstruct
+    void init() {
+        chunkTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public PassengerBatchResult ingest(Iterator<PassengerCountCreateDTO> rows) {
+        List<PassengerCountCreateDTO> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkRowNumbers = new ArrayList<>(chunkSize);
+        List<RowError> rejected = new ArrayList<>();
+        int rowNumber = 0;
+        int inserted = 0;
+        int failed = 0;
+
+        while (true) {
+            PassengerCountCreateDTO row;
+            try {
+                if (!rows.hasNext()) {
+                    break;
+                }
+                row = rows.next();
+            } catch (RuntimeException e) {
+                // Поток оборван или строка не разбирается - дальше читать нельзя
+                rejected.add(new RowError(rowNumber + 1, "malformed input - " + e.getMessage()));
+                failed++;
+                break;
+            }
+            rowNumber++;
+
+            String error = validate(row);
+            if (error != null) {
+                rejected.add(new RowError(rowNumber, "invalid data - " + error));
+                failed++;
+                continue;
+            }
+
+            chunk.add(row);
+            chunkRowNumbers.add(rowNumber);
+            if (chunk.size() >= chunkSize) {
+                int written = writeChunk(chunk, chunkRowNumbers, rejected);
+                inserted += written;
+                failed += chunk.size() - written;
+                chunk.clear();
+                chunkRowNumbers.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            int written = writeChunk(chunk, chunkRowNumbers, rejected);
+            inserted += written;
+            failed += chunk.size() - written;
+        }
+
+        log.debug("Passenger batch ingested: {} inserted, {} failed", inserted, failed);
+        return new PassengerBatchResult(inserted, failed, rejected);
+    }
+
+    /**
+     * Проверка полей одной строки, null - если строка корректна
+     */
+    public static String validate(PassengerCountCreateDTO row) {
+        if (row == null) {
+            return "empty row";
+        }
+        if (row.getBusId() == null) {
+            return "busId is missing";
+        }
+        if (row.getStopId() == null) {
+            return "stopId is missing";
+        }
+        if (row.getTimestamp() == null) {
+            return "timestamp is missing";
+        }
+        if (row.getEntered() == null || row.getEntered() < 0) {
+            return "entered must be a non-negative number";
+        }
+        if (row.getExited() == null || row.getExited() < 0) {
+            return "exited must be a non-negative number";
+        }
+        return null;
+    }
+
+    private int writeChunk(List<PassengerCountCreateDTO> chunk, List<Integer> rowNumbers,
+            List<RowError> rejected) {
+        return chunkTransaction.execute(status -> writeChunkInTransaction(chunk, rowNumbers, rejected));
+    }
+
+    private int writeChunkInTransaction(List<PassengerCountCreateDTO> chunk, List<Integer> rowNumbers,
+            List<RowError> rejected) {
+        Set<Long> busIds = new HashSet<>();
+        Set<Long> stopIds = new HashSet<>();
+        for (PassengerCountCreateDTO row : chunk) {
+            busIds.add(row.getBusId());
+            stopIds.add(row.getStopId());
+        }
+        // Маршрут фиксируется в момент записи, значения могут быть null
+        Map<Long, Long> routeByBus = new HashMap<>();
+        for (BusRouteRef bus : busRepository.findRouteRefs(busIds)) {
+            routeByBus.put(bus.busId(), bus.routeId());
+        }
+        Set<Long> knownStops = new HashSet<>(stopRepository.findExistingIds(stopIds));
+
+        List<PassengerCountCreateDTO> valid = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            PassengerCountCreateDTO row = chunk.get(i);
+            String error = null;
+            if (!routeByBus.containsKey(row.getBusId())) {
+                error = "Bus not found: " + row.getBusId();
+            } else if (!knownStops.contains(row.getStopId())) {
+                error = "Stop not found: " + row.getStopId();
+            }
+            if (error != null) {
+                rejected.add(new RowError(rowNumbers.get(i), "invalid data - " + error));
+            } else {
+                valid.add(row);
+            }
+        }
+        int written = batchRepository.insertAll(valid, routeByBus);
+        if (written > 0) {
+            eventPublisher.publishEvent(new PassengerCountsChangedEvent(valid.stream()
+                    .map(row -> PassengerCountDelta.added(row, routeByBus.get(row.getBusId())))
+                    .toList()));
+        }
+        return written;
+    }
+}
@@ -1,29 +1,50 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.KeysetPage;
+import com.example.demo.dto.KeysetCursor;
 import com.example.demo.dto.PassengerResponseDto;
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
 import com.example.demo.model.PassengerCount;
+import com.example.demo.repository.BusRepository;
 import com.example.demo.repository.PassengerCountRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
 public class PassengerCountService {
     
     private final PassengerCountRepository passengerCountRepository;
+    private final BusRepository busRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${passenger.page.default-size:100}")
+    private int defaultPageSize;
+    
+    @Value("${passenger.page.max-size:1000}")
+    private int maxPageSize;
     
     // === DTO методы для чтения ===
     
-    @Cacheable(value = "passengers", key = "'all'")
-    public List<PassengerResponseDto> getAll() {
-        return passengerCountRepository.findAllAsDto();
+    // Списки отдаются страницами по (timestamp, id); без limit - passenger.page.default-size строк.
+    // В "passengerPages" кэшируются только первые страницы
+    
+    @Cacheable(value = "passengerPages", key = "{'all', #limit}", condition = "#cursor == null")
+    public KeysetPage<PassengerResponseDto> getPage(String cursor, Integer limit) {
+        return list(passengerCountRepository::findPageAsDto, cursor, limit);
     }
     
     @Cacheable(value = "passengers", key = "#id")
@@ -32,63 +53,109 @@ public class PassengerCountService {
             .orElseThrow(() -> new RuntimeException("Passenger not found with id: " + id));
     }
     
-    @Cacheable(value = "passengers", key = "{'byStop', #stopId}")
-    public List<PassengerResponseDto> getByStopId(Long stopId) {
-        return passengerCountRepository.findByStopIdAsDto(stopId);
+    @Cacheable(value = "passengerPages", key = "{'byStop', #stopId, #limit}", condition = "#cursor == null")
+    public KeysetPage<PassengerResponseDto> getPageByStopId(Long stopId, String cursor, Integer limit) {
+        return list((ts, id, pageable) -> passengerCountRepository.findPageByStopIdAsDto(stopId, ts, id, pageable),
+            cursor, limit);
+    }
+    
+    @Cacheable(value = "passengerPages", key = "{'byBus', #busId, #limit}", condition = "#cursor == null")
+    public KeysetPage<PassengerResponseDto> getPageByBusId(Long busId, String cursor, Integer limit) {
+        return list((ts, id, pageable) -> passengerCountRepository.findPageByBusIdAsDto(busId, ts, id, pageable),
+            cursor, limit);
     }
     
-    @Cacheable(value = "passengers", key = "{'byBus', #busId}")
-    public List<PassengerResponseDto> getByBusId(Long busId) {
-        return passengerCountRepository.findByBusIdAsDto(busId);
+    @Cacheable(value = "passengerPages", key = "{'byRoute', #routeId, #limit}", condition = "#cursor == null")
+    public KeysetPage<PassengerResponseDto> getPageByRouteId(Long routeId, String cursor, Integer limit) {
+        return list((ts, id, pageable) -> passengerCountRepository.findPageByRouteIdAsDto(routeId, ts, id, pageable),
+            cursor, limit);
     }
     
-    @Cacheable(value = "passengers", key = "{'byRoute', #routeId}")
-    public List<PassengerResponseDto> getByRouteId(Long routeId) {
-        return passengerCountRepository.findByRouteIdAsDto(routeId);
+    // Выборка ленты после курсора (ts, id)
+    @FunctionalInterface
+    private interface PageQuery {
+        List<PassengerResponseDto> find(LocalDateTime ts, Long id, Pageable pageable);
+    }
+    
+    private KeysetPage<PassengerResponseDto> list(PageQuery query, String cursor, Integer limit) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int size = resolveLimit(limit);
+        return toPage(query.find(after.timestamp(), after.id(), PageRequest.of(0, size + 1)), size);
+    }
+    
+    private int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+    
+    // Запрашиваем size + 1 строк: лишняя строка означает, что есть следующая страница
+    private KeysetPage<PassengerResponseDto> toPage(List<PassengerResponseDto> rows, int size) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<PassengerResponseDto> items = rows.subList(0, size);
+        return new KeysetPage<>(new ArrayList<>(items),
+            new KeysetCursor(items.get(size - 1).getTimestamp(), items.get(size - 1).getId()).encode());
     }
     
     // === Методы для сущностей (для создания/обновления) ===
     
-    @CacheEvict(value = "passengers", key = "'all'")
     @Transactional
     public PassengerCount create(PassengerCount passengerCount) {
-        return passengerCountRepository.save(passengerCount);
+        passengerCount.setRouteId(currentRouteId(passengerCount));
+        PassengerCount saved = passengerCountRepository.save(passengerCount);
+        eventPublisher.publishEvent(new PassengerCountsChangedEvent(
+                List.of(PassengerCountDelta.added(saved))));
+        return saved;
     }
     
-    @Caching(evict = {
-        @CacheEvict(value = "passengers", key = "#id"),
-        @CacheEvict(value = "passengers", key = "'all'")
-    })
+    @CacheEvict(value = "passengers", key = "#id")
     @Transactional
     public PassengerCount update(Long id, PassengerCount updatedPassengerCount) {
         return passengerCountRepository.findById(id)
                 .map(passengerCount -> {
+                    PassengerCountDelta before = PassengerCountDelta.removed(passengerCount);
+                    // Маршрут перечитывается только при смене автобуса
+                    boolean busChanged = !Objects.equals(passengerCount.getBus().getId(),
+                            updatedPassengerCount.getBus().getId());
                     passengerCount.setBus(updatedPassengerCount.getBus());
+                    if (busChanged || passengerCount.getRouteId() == null) {
+                        passengerCount.setRouteId(currentRouteId(passengerCount));
+                    }
                     passengerCount.setStop(updatedPassengerCount.getStop());
                     passengerCount.setEntered(updatedPassengerCount.getEntered());
                     passengerCount.setExited(updatedPassengerCount.getExited());
                     passengerCount.setTimestamp(updatedPassengerCount.getTimestamp());
-                    return passengerCountRepository.save(passengerCount);
+                    PassengerCount saved = passengerCountRepository.save(passengerCount);
+                    eventPublisher.publishEvent(new PassengerCountsChangedEvent(
+                            List.of(before, PassengerCountDelta.added(saved))));
+                    return saved;
                 })
                 .orElseThrow(() -> new RuntimeException("Passenger not found with id: " + id));
     }
     
-    @Caching(evict = {
-        @CacheEvict(value = "passengers", key = "#id"),
-        @CacheEvict(value = "passengers", key = "'all'")
-    })
+    private Long currentRouteId(PassengerCount passengerCount) {
+        return busRepository.findRouteIdById(passengerCount.getBus().getId()).orElse(null);
+    }
+    
+    @CacheEvict(value = "passengers", key = "#id")
     @Transactional
     public boolean delete(Long id) {
-        if (passengerCountRepository.existsById(id)) {
-            passengerCountRepository.deleteById(id);
-            return true;
-        }
-        return false;
+        return passengerCountRepository.findById(id)
+                .map(passengerCount -> {
+                    passengerCountRepository.delete(passengerCount);
+                    eventPublisher.publishEvent(new PassengerCountsChangedEvent(
+                            List.of(PassengerCountDelta.removed(passengerCount))));
+                    return true;
+                })
+                .orElse(false);
     }
     
     // === Дополнительные методы ===
     
-    @Cacheable(value = "passengers", key = "{'byPeriod', #start, #end}")
+    @Cacheable(value = "passengerPeriods", key = "{#start, #end}")
     public List<PassengerCount> getByPeriod(LocalDateTime start, LocalDateTime end) {
         return passengerCountRepository.findByTimestampBetween(start, end);
     }
@@ -0,0 +1,208 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.PassengerBatchResult;
+import com.example.demo.dto.PassengerBatchResult.RowError;
+import com.example.demo.dto.PassengerCountCreateDTO;
+import com.example.demo.enums.IngestDurability;
+import com.example.demo.exception.AppException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Буфер отложенной записи показаний счетчиков.
+ * События складываются в ограниченную очередь, отдельный поток
+ * сбрасывает их в passenger_counts пакетами по размеру или по таймеру.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PassengerIngestBuffer {
+
+    private final PassengerCountBatchService passengerCountBatchService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${passenger.ingest.capacity:10000}")
+    private int capacity;
+
+    @Value("${passenger.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${passenger.ingest.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${passenger.ingest.offer-timeout-ms:5}")
+    private long offerTimeoutMs;
+
+    @Value("${passenger.ingest.durability:ENQUEUE}")
+    private IngestDurability durability;
+
+    private BlockingQueue<PendingEvent> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private Counter flushedCounter;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+
+    private record PendingEvent(PassengerCountCreateDTO row, CompletableFuture<Void> ack) {}
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("passenger.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("События в очереди на запись")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("passenger.ingest.flush")
+                .description("Время сброса пакета в БД")
+                .register(meterRegistry);
+        flushedCounter = meterRegistry.counter("passenger.ingest.flushed");
+        rejectedCounter = meterRegistry.counter("passenger.ingest.rejected");
+        failedCounter = meterRegistry.counter("passenger.ingest.failed");
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "passenger-ingest-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Passenger ingest buffer started: capacity={}, batchSize={}, durability={}",
+                capacity, batchSize, durability);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public IngestDurability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Поставить событие в очередь. В режиме FLUSH future завершается
+     * после фиксации пакета в БД, в режиме ENQUEUE - сразу.
+     */
+    public CompletableFuture<Void> submit(PassengerCountCreateDTO row) {
+        String error = PassengerCountBatchService.validate(row);
+        if (error != null) {
+            throw new AppException(HttpStatus.BAD_REQUEST, error);
+        }
+
+        CompletableFuture<Void> ack = durability == IngestDurability.FLUSH
+                ? new CompletableFuture<>()
+                : null;
+        boolean accepted;
+        try {
+            accepted = queue.offer(new PendingEvent(row, ack), offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            rejectedCounter.increment();
+            throw new AppException(HttpStatus.SERVICE_UNAVAILABLE, "Ingest buffer is full");
+        }
+        return ack != null ? ack : CompletableFuture.completedFuture(null);
+    }
+
+    private void runFlusher() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Добираем пакет до batchSize, но не дольше flushIntervalMs
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+        log.info("Passenger ingest buffer stopped");
+    }
+
+    private void flush(List<PendingEvent> batch) {
+        List<PassengerCountCreateDTO> rows = new ArrayList<>(batch.size());
+        for (PendingEvent event : batch) {
+            rows.add(event.row());
+        }
+
+        long start = System.nanoTime();
+        try {
+            PassengerBatchResult result = passengerCountBatchService.ingest(rows.iterator());
+            flushedCounter.increment(result.successCount());
+            if (result.hasError()) {
+                failedCounter.increment(result.failedCount());
+                log.warn("Ingest flush dropped {} rows: {}", result.failedCount(), result.errors());
+            }
+            // Строки пакета нумеруются с 1 в порядке очереди
+            Map<Integer, String> rejected = new HashMap<>();
+            for (RowError error : result.rejectedRows()) {
+                rejected.put(error.row(), error.message());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<Void> ack = batch.get(i).ack();
+                if (ack == null) {
+                    continue;
+                }
+                String error = rejected.get(i + 1);
+                if (error != null) {
+                    ack.completeExceptionally(new AppException(HttpStatus.UNPROCESSABLE_ENTITY, error));
+                } else {
+                    ack.complete(null);
+                }
+            }
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            log.error("Ingest flush of {} rows failed", batch.size(), e);
+            for (PendingEvent event : batch) {
+                if (event.ack() != null) {
+                    event.ack().completeExceptionally(e);
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dto.PassengerRollupSlice;
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.model.Bus;
+import com.example.demo.repository.PassengerRollupBatchRepository;
+import com.example.demo.repository.PassengerRollupRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Профиль загрузки по часам недели (168 ячеек) для каждого маршрута и
+ * каждой остановки маршрута. Строится из почасовых агрегатов и дополняется
+ * новыми записями, так что прогноз не обращается к БД.
+ * Каждое изменение несет номер своей транзакции, перестройка - снимок БД, по которому прочитаны агрегаты:
+ * изменение прибавляется к профилю, только если снимок его транзакцию не видел.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PassengerLoadProfileService {
+
+    static final int HOURS_PER_WEEK = 7 * 24;
+
+    // Ключ остановки для профиля маршрута целиком
+    private static final long WHOLE_ROUTE = 0L;
+
+    private final PassengerRollupRepository passengerRollupRepository;
+    private final PassengerRollupBatchRepository rollupBatchRepository;
+    private final BusService busService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${prediction.profile.history-days:30}")
+    private int historyDays;
+
+    // routeId -> stopId -> профиль
+    private volatile Map<Long, Map<Long, HourOfWeekProfile>> profiles = new ConcurrentHashMap<>();
+    // Снимок, по которому построена карта profiles; null - карта еще не строилась
+    private CommitSnapshot profileSnapshot;
+    // Изменения, зафиксированные во время перестройки; null - перестройка не идет
+    private Queue<CommittedDeltas> pending;
+
+    // Приращения идут параллельно под read-блокировкой; перестройка берет write-блокировку
+    // только на начало записи изменений и на замену карты, запрос агрегатов идет без блокировки
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    // Агрегаты и снимок читаются одним снимком REPEATABLE READ
+    private TransactionTemplate snapshotTransaction;
+
+    private record CommittedDeltas(List<PassengerCountDelta> deltas, Long transactionId) {}
+
+    /**
+     * Сумма чистого потока и число записей по каждому часу недели
+     */
+    static final class HourOfWeekProfile {
+        private final AtomicLongArray net = new AtomicLongArray(HOURS_PER_WEEK);
+        private final AtomicLongArray records = new AtomicLongArray(HOURS_PER_WEEK);
+
+        void add(int slot, long netDelta, long recordsDelta) {
+            net.addAndGet(slot, netDelta);
+            records.addAndGet(slot, recordsDelta);
+        }
+
+        /**
+         * Средний чистый поток на запись; если в этот час недели данных нет -
+         * среднее по тому же часу всех дней недели
+         */
+        double average(int slot) {
+            long slotRecords = records.get(slot);
+            if (slotRecords > 0) {
+                return net.get(slot) / (double) slotRecords;
+            }
+            long hourNet = 0;
+            long hourRecords = 0;
+            for (int s = slot % 24; s < HOURS_PER_WEEK; s += 24) {
+                hourNet += net.get(s);
+                hourRecords += records.get(s);
+            }
+            return hourRecords > 0 ? hourNet / (double) hourRecords : 0.0;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshotTransaction.setReadOnly(true);
+    }
+
+    static int slotOf(LocalDateTime time) {
+        return (time.getDayOfWeek().getValue() - 1) * 24 + time.getHour();
+    }
+
+    /**
+     * Средний чистый поток для маршрута (и остановки, если задана) в этот час недели
+     */
+    public double averageLoad(Long routeId, Long stopId, LocalDateTime time) {
+        Map<Long, HourOfWeekProfile> routeProfiles = profiles.get(routeId);
+        if (routeProfiles == null) {
+            return 0.0;
+        }
+        HourOfWeekProfile profile = routeProfiles.get(stopId != null ? stopId : WHOLE_ROUTE);
+        return profile != null ? profile.average(slotOf(time)) : 0.0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Полная перестройка профиля из агрегатов за последние historyDays дней
+     */
+    @Scheduled(cron = "${prediction.profile.rebuild-cron:0 30 3 * * *}")
+    public synchronized int rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            pending = new ConcurrentLinkedQueue<>();
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+
+        try {
+            record Loaded(CommitSnapshot snapshot, List<PassengerRollupSlice> slices) {}
+            Loaded loaded = snapshotTransaction.execute(status -> new Loaded(
+                    CommitSnapshot.parse(rollupBatchRepository.currentSnapshot()),
+                    passengerRollupRepository.findSlicesSince(LocalDateTime.now().minusDays(historyDays))));
+
+            Map<Long, Map<Long, HourOfWeekProfile>> rebuilt = new ConcurrentHashMap<>();
+            for (PassengerRollupSlice slice : loaded.slices()) {
+                int slot = slotOf(slice.bucketHour());
+                Map<Long, HourOfWeekProfile> routeProfiles =
+                        rebuilt.computeIfAbsent(slice.routeId(), id -> new ConcurrentHashMap<>());
+                routeProfiles.computeIfAbsent(WHOLE_ROUTE, id -> new HourOfWeekProfile())
+                        .add(slot, slice.net(), slice.records());
+                routeProfiles.computeIfAbsent(slice.stopId(), id -> new HourOfWeekProfile())
+                        .add(slot, slice.net(), slice.records());
+            }
+
+            rebuildLock.writeLock().lock();
+            try {
+                // Изменения, которых не было в снимке агрегатов, переносятся в новую карту
+                int replayed = 0;
+                for (CommittedDeltas committed : pending) {
+                    if (!loaded.snapshot().sees(committed.transactionId())) {
+                        apply(committed.deltas(), rebuilt);
+                        replayed++;
+                    }
+                }
+                profiles = rebuilt;
+                profileSnapshot = loaded.snapshot();
+                log.info("Профиль загрузки перестроен: {} маршрутов, {} срезов, {} изменений после снимка",
+                        rebuilt.size(), loaded.slices().size(), replayed);
+            } finally {
+                rebuildLock.writeLock().unlock();
+            }
+            return loaded.slices().size();
+        } finally {
+            rebuildLock.writeLock().lock();
+            pending = null;
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Вызывается в транзакции записи: номер транзакции запоминается до фиксации,
+     * профиль обновляется после нее
+     */
+    @EventListener
+    public void onPassengerCountsChanged(PassengerCountsChangedEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyCommitted(event.deltas(), null);
+            return;
+        }
+        long transactionId = rollupBatchRepository.currentTransactionId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Запись уже зафиксирована - ошибка профиля не должна доходить до вызывающего
+                try {
+                    applyCommitted(event.deltas(), transactionId);
+                } catch (RuntimeException e) {
+                    log.error("Failed to update load profile", e);
+                }
+            }
+        });
+    }
+
+    private void applyCommitted(List<PassengerCountDelta> deltas, Long transactionId) {
+        rebuildLock.readLock().lock();
+        try {
+            // Изменение уже учтено, если карта построена по снимку, видевшему его транзакцию
+            if (profileSnapshot == null || !profileSnapshot.sees(transactionId)) {
+                apply(deltas, profiles);
+            }
+            if (pending != null) {
+                pending.add(new CommittedDeltas(deltas, transactionId));
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    private void apply(List<PassengerCountDelta> deltas, Map<Long, Map<Long, HourOfWeekProfile>> current) {
+        // Маршрут записи - зафиксированный при подсчете, как в агрегатах; для старых строк - маршрут автобуса
+        Map<Long, Long> routeByBus = new HashMap<>();
+        for (PassengerCountDelta delta : deltas) {
+            Long routeId = delta.routeId() != null
+                    ? delta.routeId()
+                    : routeByBus.computeIfAbsent(delta.busId(), this::routeOf);
+            int slot = slotOf(delta.timestamp());
+            Map<Long, HourOfWeekProfile> routeProfiles =
+                    current.computeIfAbsent(routeId, id -> new ConcurrentHashMap<>());
+            routeProfiles.computeIfAbsent(WHOLE_ROUTE, id -> new HourOfWeekProfile())
+                    .add(slot, delta.net(), delta.records());
+            routeProfiles.computeIfAbsent(delta.stopId(), id -> new HourOfWeekProfile())
+                    .add(slot, delta.net(), delta.records());
+        }
+    }
+
+    private Long routeOf(Long busId) {
+        Bus bus = busService.getById(busId);
+        return bus != null && bus.getRoute() != null ? bus.getRoute().getId() : WHOLE_ROUTE;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.model.PassengerHourlyRollup;
+import com.example.demo.repository.PassengerRollupBatchRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Поддержка почасовых агрегатов passenger_hourly_rollup.
+ * Обновляется в той же транзакции, что и сырые данные.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PassengerRollupService {
+
+    private final PassengerRollupBatchRepository rollupBatchRepository;
+
+    private record RollupKey(LocalDateTime hour, Long routeId, Long busId, Long stopId) {}
+
+    // Порядок первичного ключа агрегата: параллельные пакеты блокируют строки в одном порядке
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator
+            .comparing(RollupKey::hour)
+            .thenComparing(RollupKey::routeId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(RollupKey::busId)
+            .thenComparing(RollupKey::stopId);
+
+    @EventListener
+    public void onPassengerCountsChanged(PassengerCountsChangedEvent event) {
+        // Сворачиваем дельты пакета до одной строки на ключ, ключи упорядочены
+        Map<RollupKey, PassengerHourlyRollup> merged = new TreeMap<>(KEY_ORDER);
+        for (PassengerCountDelta delta : event.deltas()) {
+            RollupKey key = new RollupKey(delta.timestamp().truncatedTo(ChronoUnit.HOURS),
+                    delta.routeId(), delta.busId(), delta.stopId());
+            PassengerHourlyRollup row = merged.computeIfAbsent(key, k ->
+                    new PassengerHourlyRollup(null, k.hour(), k.routeId(), k.busId(), k.stopId(), 0L, 0L, 0L));
+            row.setEntered(row.getEntered() + delta.entered());
+            row.setExited(row.getExited() + delta.exited());
+            row.setRecordCount(row.getRecordCount() + delta.records());
+        }
+        rollupBatchRepository.applyDeltas(new ArrayList<>(merged.values()));
+    }
+
+    /**
+     * Пересчет агрегатов за дни [from, to] из сырых данных, по одной транзакции на день.
+     * Можно запускать и за текущий день: на время пересчета дня запись дельт приостанавливается.
+     */
+    @Async
+    public CompletableFuture<Integer> backfill(LocalDate from, LocalDate to) {
+        int rows = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            rows += rollupBatchRepository.rebuildRange(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        }
+        log.info("Пересчитаны почасовые агрегаты за {} - {}: {} строк", from, to, rows);
+        return CompletableFuture.completedFuture(rows);
+    }
+}
@@ -1,54 +1,56 @@
 package com.example.demo.service;
 
 import com.example.demo.dto.RoutePredictionDTO;
-import com.example.demo.model.PassengerCount;
+import com.example.demo.exception.AppException;
 import com.example.demo.model.Route;
-import com.example.demo.repository.PassengerCountRepository;
 import com.example.demo.repository.RouteRepository;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class PredictionService {
     
-    private final PassengerCountRepository passengerCountRepository;
     private final RouteRepository routeRepository;
+    private final PassengerLoadProfileService loadProfileService;
+    private final BusOccupancyTracker occupancyTracker;
     
-    public PredictionService(PassengerCountRepository passengerCountRepository, 
-                           RouteRepository routeRepository) {
-        this.passengerCountRepository = passengerCountRepository;
+    public PredictionService(RouteRepository routeRepository,
+                           PassengerLoadProfileService loadProfileService,
+                           BusOccupancyTracker occupancyTracker) {
         this.routeRepository = routeRepository;
+        this.loadProfileService = loadProfileService;
+        this.occupancyTracker = occupancyTracker;
     }
     
     /**
      * Прогноз загруженности для конкретного маршрута, времени и остановки
      */
     public RoutePredictionDTO getPredictionForRouteAndTime(String routeId, LocalDateTime time, String stopId) {
-        Route route = routeRepository.findById(Long.parseLong(routeId)).orElse(null);
+        Route route = routeRepository.findById(parseId("route", routeId)).orElse(null);
         if (route == null) {
             return null;
         }
         
-        // Расчет средней загруженности в это время за последние 30 дней
-        LocalDateTime startDate = time.minusDays(30);
-        LocalDateTime endDate = time;
-        
-        List<PassengerCount> historicalData = passengerCountRepository.findByTimestampBetween(startDate, endDate);
-        
-        // Фильтруем данные по маршруту и времени
-        List<PassengerCount> filteredData = historicalData.stream()
-            .filter(pc -> pc.getBus().getRoute().getId().equals(route.getId()))
-            .filter(pc -> pc.getTimestamp().toLocalTime().getHour() == time.getHour())
-            .toList();
-        
-        // Расчет средней загруженности
-        double averageLoad = filteredData.stream()
-            .mapToInt(pc -> pc.getEntered() - pc.getExited())
-            .average()
-            .orElse(0.0);
+        return predict(route, time, stopId != null ? parseId("stop", stopId) : null);
+    }
+    
+    // ID приходят строками из параметров запроса: нечисловое значение - ошибка клиента
+    private static Long parseId(String name, String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Invalid " + name + " id: " + value);
+        }
+    }
+    
+    private RoutePredictionDTO predict(Route route, LocalDateTime time, Long stopId) {
+        // Средняя загруженность на одну запись в этот час недели (профиль в памяти)
+        double averageLoad = loadProfileService.averageLoad(route.getId(), stopId, time);
         
         // Нормализация до процентов (предполагаем макс. вместимость 50 человек)
         int predictedLoad = (int) Math.min(100, Math.max(0, (averageLoad / 50.0) * 100));
@@ -61,7 +63,7 @@ public class PredictionService {
      */
     public List<RoutePredictionDTO> getDailyPredictions(String routeId) {
         List<RoutePredictionDTO> predictions = new ArrayList<>();
-        Route route = routeRepository.findById(Long.parseLong(routeId)).orElse(null);
+        Route route = routeRepository.findById(parseId("route", routeId)).orElse(null);
         
         if (route != null) {
             LocalDateTime today = LocalDateTime.now().with(LocalTime.MIN);
@@ -69,10 +71,7 @@ public class PredictionService {
             // Прогноз на каждый час с 6:00 до 22:00
             for (int hour = 6; hour <= 22; hour++) {
                 LocalDateTime predictionTime = today.withHour(hour).withMinute(0);
-                RoutePredictionDTO prediction = getPredictionForRouteAndTime(routeId, predictionTime, null);
-                if (prediction != null) {
-                    predictions.add(prediction);
-                }
+                predictions.add(predict(route, predictionTime, null));
             }
         }
         
@@ -80,19 +79,16 @@ public class PredictionService {
     }
     
     /**
-     * Расчет текущей загруженности автобуса
+     * Текущая загруженность автобуса (счетчик в памяти)
      */
     public int calculateCurrentLoad(Long busId) {
-        List<PassengerCount> todayData = passengerCountRepository.findByTimestampBetween(
-            LocalDateTime.now().with(LocalTime.MIN), 
-            LocalDateTime.now()
-        );
-        
-        int currentLoad = todayData.stream()
-            .filter(pc -> pc.getBus().getId().equals(busId))
-            .mapToInt(pc -> pc.getEntered() - pc.getExited())
-            .sum();
-            
-        return Math.max(0, currentLoad); // Не может быть отрицательным
+        return occupancyTracker.getLoad(busId);
+    }
+    
+    /**
+     * Текущая загруженность всех автобусов
+     */
+    public Map<Long, Integer> calculateCurrentLoads() {
+        return occupancyTracker.getAllLoads();
     }
 }
\ No newline at end of file
@@ -1,18 +1,31 @@
 // src/main/java/com/example/demo/service/ReportService.java
 package com.example.demo.service;
 
+import com.example.demo.dto.BusPassengerStats;
+import com.example.demo.dto.PassengerResponseDto;
+import com.example.demo.dto.PassengerTotals;
+import com.example.demo.dto.StopPassengerStats;
 import com.example.demo.model.*;
 import com.example.demo.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -23,6 +36,7 @@ public class ReportService {
     private final BusRepository busRepository;
     private final StopRepository stopRepository;
     private final RouteRepository routeRepository;
+    private final PassengerRollupRepository passengerRollupRepository;
     
     /**
      * Генерация отчета по пассажиропотоку за день
@@ -35,8 +49,18 @@ public class ReportService {
         LocalDateTime start = date.atStartOfDay();
         LocalDateTime end = date.atTime(23, 59, 59);
         
-        List<PassengerCount> passengers = passengerCountRepository
-            .findByTimestampBetween(start, end);
+        // Агрегация выполняется в БД: по одной строке на остановку и автобус
+        List<StopPassengerStats> stopStats = passengerCountRepository.aggregateByStop(start, end);
+        List<BusPassengerStats> busStats = passengerCountRepository.aggregateByBus(start, end);
+        
+        long totalEntered = 0;
+        long totalExited = 0;
+        long totalRecords = 0;
+        for (StopPassengerStats stat : stopStats) {
+            totalEntered += stat.entered();
+            totalExited += stat.exited();
+            totalRecords += stat.records();
+        }
         
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
              PrintWriter writer = new PrintWriter(baos)) {
@@ -49,19 +73,13 @@ public class ReportService {
             writer.println();
             
             // Статистика
-            int totalEntered = passengers.stream()
-                .mapToInt(PassengerCount::getEntered)
-                .sum();
-            int totalExited = passengers.stream()
-                .mapToInt(PassengerCount::getExited)
-                .sum();
-            int netChange = totalEntered - totalExited;
+            long netChange = totalEntered - totalExited;
             
             writer.println("ОБЩАЯ СТАТИСТИКА:");
             writer.printf("  Всего вошедших: %,d чел.\n", totalEntered);
             writer.printf("  Всего вышедших: %,d чел.\n", totalExited);
             writer.printf("  Чистое изменение: %,d чел.\n", netChange);
-            writer.printf("  Всего записей: %,d\n", passengers.size());
+            writer.printf("  Всего записей: %,d\n", totalRecords);
             writer.println();
             
             // По остановкам
@@ -71,22 +89,13 @@ public class ReportService {
                 "Остановка", "Вошедшие", "Вышедшие", "Нагрузка");
             writer.println("-".repeat(60));
             
-            List<Stop> allStops = stopRepository.findAll();
-            for (Stop stop : allStops) {
-                List<PassengerCount> stopPassengers = passengers.stream()
-                    .filter(p -> p.getStop() != null && p.getStop().getId().equals(stop.getId()))
-                    .toList();
-                
-                int stopEntered = stopPassengers.stream()
-                    .mapToInt(PassengerCount::getEntered)
-                    .sum();
-                int stopExited = stopPassengers.stream()
-                    .mapToInt(PassengerCount::getExited)
-                    .sum();
+            for (StopPassengerStats stat : stopStats) {
+                long stopEntered = stat.entered();
+                long stopExited = stat.exited();
                 
                 if (stopEntered > 0 || stopExited > 0) {
                     writer.printf("%-20s %,12d %,12d %,12d\n",
-                        stop.getName(), stopEntered, stopExited, stopEntered - stopExited);
+                        stat.stopName(), stopEntered, stopExited, stopEntered - stopExited);
                 }
             }
             
@@ -99,21 +108,14 @@ public class ReportService {
                 "Автобус", "Маршрут", "Пассажиров");
             writer.println("-".repeat(60));
             
-            List<Bus> allBuses = busRepository.findAll();
-            for (Bus bus : allBuses) {
-                List<PassengerCount> busPassengers = passengers.stream()
-                    .filter(p -> p.getBus() != null && p.getBus().getId().equals(bus.getId()))
-                    .toList();
-                
-                int busPassengerCount = busPassengers.stream()
-                    .mapToInt(p -> p.getEntered() - p.getExited())
-                    .sum();
+            for (BusPassengerStats stat : busStats) {
+                long busPassengerCount = stat.entered() - stat.exited();
                 
                 if (busPassengerCount != 0) {
-                    String routeInfo = bus.getRoute() != null ? 
-                        "Маршрут " + bus.getRoute().getId() : "Не назначен";
+                    String routeInfo = stat.routeId() != null ? 
+                        "Маршрут " + stat.routeId() : "Не назначен";
                     writer.printf("%-15s %-20s %,12d\n",
-                        bus.getModel(), routeInfo, busPassengerCount);
+                        stat.busModel(), routeInfo, busPassengerCount);
                 }
             }
             
@@ -124,7 +126,7 @@ public class ReportService {
             
             writer.flush();
             
-            log.info("Сгенерирован дневной отчет за {}: {} записей", date, passengers.size());
+            log.info("Сгенерирован дневной отчет за {}: {} записей", date, totalRecords);
             return baos.toByteArray();
             
         } catch (Exception e) {
@@ -134,50 +136,50 @@ public class ReportService {
     }
     
     /**
-     * Генерация CSV отчета для импорта
+     * Потоковая выгрузка CSV за период [from, to] прямо в выходной поток.
+     * Строки читаются курсором и не накапливаются в памяти.
      */
-    public byte[] generateCsvReport(LocalDate date) {
-        if (date == null) {
-            date = LocalDate.now();
-        }
-        
-        LocalDateTime start = date.atStartOfDay();
-        LocalDateTime end = date.atTime(23, 59, 59);
-        
-        List<PassengerCount> passengers = passengerCountRepository
-            .findByTimestampBetween(start, end);
-        
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             PrintWriter writer = new PrintWriter(baos)) {
-            
-            // CSV заголовок
-            writer.println("timestamp,bus_id,stop_id,entered,exited,net_change");
-            
-            // Данные
-            for (PassengerCount passenger : passengers) {
-                int netChange = passenger.getEntered() - passenger.getExited();
-                Long busId = passenger.getBus() != null ? passenger.getBus().getId() : null;
-                Long stopId = passenger.getStop() != null ? passenger.getStop().getId() : null;
-                
-                writer.printf("%s,%s,%s,%d,%d,%d\n",
-                    passenger.getTimestamp().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
-                    busId != null ? busId : "",
-                    stopId != null ? stopId : "",
-                    passenger.getEntered(),
-                    passenger.getExited(),
-                    netChange
-                );
+    @Transactional(readOnly = true)
+    public long writeCsvReport(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.atTime(23, 59, 59);
+        
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        StringBuilder line = new StringBuilder(96);
+        long rows = 0;
+        
+        // CSV заголовок
+        writer.write("timestamp,bus_id,stop_id,entered,exited,net_change\n");
+        
+        try (Stream<PassengerResponseDto> passengers = passengerCountRepository
+                .streamDtoByTimestampBetween(start, end)) {
+            Iterator<PassengerResponseDto> iterator = passengers.iterator();
+            while (iterator.hasNext()) {
+                PassengerResponseDto passenger = iterator.next();
+                line.setLength(0);
+                DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(passenger.getTimestamp(), line);
+                line.append(',');
+                if (passenger.getBusId() != null) {
+                    line.append(passenger.getBusId().longValue());
+                }
+                line.append(',');
+                if (passenger.getStopId() != null) {
+                    line.append(passenger.getStopId().longValue());
+                }
+                int entered = passenger.getEntered();
+                int exited = passenger.getExited();
+                line.append(',').append(entered)
+                    .append(',').append(exited)
+                    .append(',').append(entered - exited)
+                    .append('\n');
+                writer.append(line);
+                rows++;
             }
-            
-            writer.flush();
-            
-            log.info("Сгенерирован CSV отчет за {}: {} записей", date, passengers.size());
-            return baos.toByteArray();
-            
-        } catch (Exception e) {
-            log.error("Ошибка генерации CSV отчета за {}", date, e);
-            return ("Ошибка генерации CSV отчета: " + e.getMessage()).getBytes();
         }
+        
+        writer.flush();
+        log.info("Выгружен CSV отчет за {} - {}: {} записей", from, to, rows);
+        return rows;
     }
     
     /**
@@ -189,15 +191,12 @@ public class ReportService {
         long totalRoutes = routeRepository.count();
         
         LocalDate today = LocalDate.now();
-        LocalDateTime todayStart = today.atStartOfDay();
-        LocalDateTime todayEnd = today.atTime(23, 59, 59);
         
-        List<PassengerCount> todayPassengers = passengerCountRepository
-            .findByTimestampBetween(todayStart, todayEnd);
+        // Почасовые агрегаты вместо сканирования сырых записей
+        PassengerTotals todayTotals = passengerRollupRepository
+            .findTotals(today.atStartOfDay(), today.plusDays(1).atStartOfDay());
         
-        int todayPassengersCount = todayPassengers.stream()
-            .mapToInt(p -> p.getEntered() + p.getExited())
-            .sum();
+        long todayPassengersCount = todayTotals.entered() + todayTotals.exited();
         
         // Средняя загруженность автобусов
         String avgLoad = "N/A";
@@ -228,18 +227,11 @@ public class ReportService {
             date = LocalDate.now();
         }
         
-        LocalDateTime start = date.atStartOfDay();
-        LocalDateTime end = date.atTime(23, 59, 59);
-        
-        List<PassengerCount> passengers = passengerCountRepository
-            .findByTimestampBetween(start, end);
+        PassengerTotals totals = passengerRollupRepository
+            .findTotals(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
         
-        int totalEntered = passengers.stream()
-            .mapToInt(PassengerCount::getEntered)
-            .sum();
-        int totalExited = passengers.stream()
-            .mapToInt(PassengerCount::getExited)
-            .sum();
+        long totalEntered = totals.entered();
+        long totalExited = totals.exited();
         
         return String.format(
             "📊 Отчет за %s:\n" +
@@ -248,7 +240,7 @@ public class ReportService {
             "🔄 Чистое изменение: %,d чел.\n" +
             "📝 Всего записей: %,d",
             date.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")),
-            totalEntered, totalExited, totalEntered - totalExited, passengers.size()
+            totalEntered, totalExited, totalEntered - totalExited, totals.records()
         );
     }
 }
\ No newline at end of file
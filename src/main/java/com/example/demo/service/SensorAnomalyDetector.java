@@ -0,0 +1,184 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.event.SensorReading;
+import com.example.demo.event.SensorReadingsRecordedEvent;
+import com.example.demo.model.SensorType;
+
+/**
+ * Потоковый детектор аномалий: для каждой пары (автобус, тип датчика) хранит
+ * экспоненциально сглаженные среднее и дисперсию значения и скорости его изменения.
+ * Показание аномально, если отклоняется от собственной базовой линии автобуса
+ * больше чем на z-threshold стандартных отклонений. Память на пару постоянна, БД не используется.
+ * Оценка идет до записи по копиям базовых линий, сами линии обновляются только после фиксации транзакции,
+ * так что откаченные показания их не сдвигают.
+ */
+@Component
+public class SensorAnomalyDetector {
+
+    private static final int TYPES = SensorType.values().length;
+
+    @Value("${sensor.anomaly.enabled:true}")
+    private boolean enabled;
+
+    // Вес нового показания в EWMA
+    @Value("${sensor.anomaly.alpha:0.05}")
+    private double alpha;
+
+    @Value("${sensor.anomaly.z-threshold:4.0}")
+    private double zThreshold;
+
+    @Value("${sensor.anomaly.rate-z-threshold:4.0}")
+    private double rateZThreshold;
+
+    // Сколько показаний накопить, прежде чем оценивать отклонения
+    @Value("${sensor.anomaly.warmup:30}")
+    private int warmup;
+
+    // Нижняя граница отклонения, чтобы почти постоянный датчик не давал ложных срабатываний
+    @Value("${sensor.anomaly.min-stddev:0.01}")
+    private double minStdDev;
+
+    private final Map<Long, Baseline[]> baselines = new ConcurrentHashMap<>();
+
+    /**
+     * Сглаженная статистика одного датчика одного автобуса
+     */
+    private static final class Baseline {
+        long count;
+        double mean;
+        double variance;
+        long rateCount;
+        double rateMean;
+        double rateVariance;
+        double lastValue;
+        LocalDateTime lastTimestamp;
+
+        Baseline copy() {
+            Baseline c = new Baseline();
+            c.count = count;
+            c.mean = mean;
+            c.variance = variance;
+            c.rateCount = rateCount;
+            c.rateMean = rateMean;
+            c.rateVariance = rateVariance;
+            c.lastValue = lastValue;
+            c.lastTimestamp = lastTimestamp;
+            return c;
+        }
+    }
+
+    /**
+     * Оценить показания по порядку, не меняя базовых линий: каждое следующее показание пакета
+     * сравнивается с копией линии, уже учитывающей предыдущие. true в ответе - аномалия
+     */
+    public boolean[] evaluate(List<SensorReading> readings) {
+        boolean[] flags = new boolean[readings.size()];
+        if (!enabled) {
+            return flags;
+        }
+        Map<Long, Baseline[]> copies = new HashMap<>();
+        for (int i = 0; i < readings.size(); i++) {
+            SensorReading reading = readings.get(i);
+            if (!accepts(reading)) {
+                continue;
+            }
+            Baseline[] busCopies = copies.computeIfAbsent(reading.busId(), id -> new Baseline[TYPES]);
+            int slot = reading.sensorType().ordinal();
+            if (busCopies[slot] == null) {
+                Baseline baseline = baseline(reading);
+                synchronized (baseline) {
+                    busCopies[slot] = baseline.copy();
+                }
+            }
+            flags[i] = observe(busCopies[slot], reading.timestamp(), reading.value());
+        }
+        return flags;
+    }
+
+    public boolean evaluate(SensorReading reading) {
+        return evaluate(List.of(reading))[0];
+    }
+
+    /**
+     * Учесть записанные показания в базовых линиях
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSensorReadingsRecorded(SensorReadingsRecordedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (SensorReading reading : event.readings()) {
+            if (accepts(reading)) {
+                Baseline baseline = baseline(reading);
+                synchronized (baseline) {
+                    observe(baseline, reading.timestamp(), reading.value());
+                }
+            }
+        }
+    }
+
+    private static boolean accepts(SensorReading reading) {
+        return reading.busId() != null && reading.sensorType() != null && !Double.isNaN(reading.value());
+    }
+
+    private Baseline baseline(SensorReading reading) {
+        return baselines.computeIfAbsent(reading.busId(), id -> newBaselines())[reading.sensorType().ordinal()];
+    }
+
+    private boolean observe(Baseline b, LocalDateTime timestamp, double value) {
+        boolean anomaly = b.count >= warmup && deviates(value, b.mean, b.variance, zThreshold);
+
+        // Скорость изменения считаем только по показаниям, идущим вперед во времени
+        if (b.lastTimestamp != null && timestamp != null && timestamp.isAfter(b.lastTimestamp)) {
+            double seconds = Duration.between(b.lastTimestamp, timestamp).toNanos() / 1e9;
+            double rate = (value - b.lastValue) / seconds;
+            anomaly |= b.rateCount >= warmup && deviates(rate, b.rateMean, b.rateVariance, rateZThreshold);
+            if (b.rateCount++ == 0) {
+                b.rateMean = rate;
+            } else {
+                double diff = rate - b.rateMean;
+                double increment = alpha * diff;
+                b.rateMean += increment;
+                b.rateVariance = (1 - alpha) * (b.rateVariance + diff * increment);
+            }
+        }
+
+        if (b.count++ == 0) {
+            b.mean = value;
+        } else {
+            double diff = value - b.mean;
+            double increment = alpha * diff;
+            b.mean += increment;
+            b.variance = (1 - alpha) * (b.variance + diff * increment);
+        }
+        if (timestamp != null && (b.lastTimestamp == null || !timestamp.isBefore(b.lastTimestamp))) {
+            b.lastTimestamp = timestamp;
+            b.lastValue = value;
+        }
+        return anomaly;
+    }
+
+    private boolean deviates(double x, double mean, double variance, double threshold) {
+        double stdDev = Math.max(Math.sqrt(variance), minStdDev);
+        return Math.abs(x - mean) / stdDev > threshold;
+    }
+
+    private static Baseline[] newBaselines() {
+        Baseline[] result = new Baseline[TYPES];
+        for (int i = 0; i < TYPES; i++) {
+            result[i] = new Baseline();
+        }
+        return result;
+    }
+}
@@ -1,60 +1,164 @@
 package com.example.demo.service;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import com.example.demo.Specification.SensorDataSpecification;
+import com.example.demo.dto.KeysetPage;
+import com.example.demo.dto.KeysetCursor;
+import com.example.demo.event.SensorReading;
+import com.example.demo.exception.AppException;
+import com.example.demo.event.SensorReadingsEditedEvent;
+import com.example.demo.event.SensorReadingsRecordedEvent;
 import com.example.demo.model.SensorData;
 import com.example.demo.model.SensorType;
+import com.example.demo.repository.SensorDataBatchRepository;
 import com.example.demo.repository.SensorDataRepository;
 
 @Service
 public class SensorService {
     private final SensorDataRepository sensorDataRepository;
+    private final SensorDataBatchRepository sensorDataBatchRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SensorAnomalyDetector anomalyDetector;
 
-    public SensorService(SensorDataRepository sensorDataRepository) {
+    private static final Sort KEYSET_ORDER = Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id"));
+
+    @Value("${sensor.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${sensor.page.max-size:1000}")
+    private int maxPageSize;
+
+    public SensorService(SensorDataRepository sensorDataRepository,
+            SensorDataBatchRepository sensorDataBatchRepository,
+            ApplicationEventPublisher eventPublisher,
+            SensorAnomalyDetector anomalyDetector) {
         this.sensorDataRepository = sensorDataRepository;
+        this.sensorDataBatchRepository = sensorDataBatchRepository;
+        this.eventPublisher = eventPublisher;
+        this.anomalyDetector = anomalyDetector;
     }
 
-    public List<SensorData> getAll() {
-        return sensorDataRepository.findAll();
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        sensorDataBatchRepository.updateIndexes();
     }
 
+    /**
+     * Страница показаний от новых к старым с фильтрами; null в фильтре - без ограничения
+     */
+    public KeysetPage<SensorData> getPage(Long busId, SensorType type, LocalDateTime from, LocalDateTime to,
+            Boolean anomaly, String cursor, Integer limit) {
+        int size = resolveLimit(limit);
+        List<SensorData> rows = sensorDataRepository.findBy(
+                SensorDataSpecification.filter(busId, type, from, to, anomaly, KeysetCursor.decode(cursor)),
+                query -> query.sortBy(KEYSET_ORDER).limit(size + 1).all());
+        // Лишняя строка означает, что есть следующая страница
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<SensorData> items = new ArrayList<>(rows.subList(0, size));
+        SensorData last = items.get(size - 1);
+        return new KeysetPage<>(items, new KeysetCursor(last.getTimestamp(), last.getId()).encode());
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+
+    @Transactional
     public List<SensorData> saveAllSensorData(List<SensorData> sensorDataList) {
-    return sensorDataRepository.saveAll(sensorDataList);
+        sensorDataList.forEach(sensorData -> sensorData.setAnomaly(
+                sensorData.isAnomaly() || checkForAnomaly(sensorData)));
+        boolean[] deviates = anomalyDetector.evaluate(sensorDataList.stream().map(SensorReading::of).toList());
+        for (int i = 0; i < deviates.length; i++) {
+            if (deviates[i]) {
+                sensorDataList.get(i).setAnomaly(true);
+            }
+        }
+        List<SensorData> saved = sensorDataRepository.saveAll(sensorDataList);
+        eventPublisher.publishEvent(new SensorReadingsRecordedEvent(
+                saved.stream().map(SensorReading::of).toList()));
+        return saved;
+    }
+
+    /**
+     * Запись порции уже проверенных показаний одной транзакцией; возвращает число вставленных строк.
+     * skipStored - пропускать показания, которые уже сохранены (повторная обработка файла)
+     */
+    @Transactional
+    public int saveReadings(List<SensorReading> readings, boolean skipStored) {
+        readings = markAnomalies(readings);
+        // Пропущенные повторы не публикуются: агрегаты и снимки видят каждое показание один раз
+        List<SensorReading> written = sensorDataBatchRepository.insertAll(readings, skipStored);
+        if (!written.isEmpty()) {
+            eventPublisher.publishEvent(new SensorReadingsRecordedEvent(written));
+        }
+        return written.size();
     }
 
     public SensorData getSensorData(Long id) {
         return sensorDataRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Sensor data not found"));
+                .orElseThrow(() -> new AppException(HttpStatus.NOT_FOUND, "Sensor data not found"));
     }
 
-    public SensorData createSensorData(SensorData sensorData) {
-        return sensorDataRepository.save(sensorData);
+    /**
+     * reportedAnomaly - флаг, присланный клиентом; без него флаг ставится по порогам, как при импорте CSV
+     */
+    @Transactional
+    public SensorData createSensorData(SensorData sensorData, Boolean reportedAnomaly) {
+        sensorData.setAnomaly(reportedAnomaly != null ? reportedAnomaly : checkForAnomaly(sensorData));
+        if (anomalyDetector.evaluate(SensorReading.of(sensorData))) {
+            sensorData.setAnomaly(true);
+        }
+        SensorData saved = sensorDataRepository.save(sensorData);
+        eventPublisher.publishEvent(new SensorReadingsRecordedEvent(List.of(SensorReading.of(saved))));
+        return saved;
     }
 
+    @Transactional
     public SensorData updateSensorData(Long id, SensorData updatedSensorData) {
         return sensorDataRepository.findById(id)
                 .map(sensorData -> {
-                    sensorData.setBus(updatedSensorData.getBus());
+                    SensorReading before = SensorReading.of(sensorData);
+                    // bus не приходит в JSON (@JsonIgnore) - без него автобус записи сохраняется
+                    if (updatedSensorData.getBus() != null) {
+                        sensorData.setBus(updatedSensorData.getBus());
+                    }
                     sensorData.setSensorType(updatedSensorData.getSensorType());
                     sensorData.setValue(updatedSensorData.getValue());
                     sensorData.setTimestamp(updatedSensorData.getTimestamp());
                     sensorData.setAnomaly(updatedSensorData.isAnomaly());
-                    return sensorDataRepository.save(sensorData);
+                    SensorData saved = sensorDataRepository.save(sensorData);
+                    eventPublisher.publishEvent(new SensorReadingsEditedEvent(
+                            List.of(before, SensorReading.of(saved))));
+                    return saved;
                 })
                 .orElse(null);
             }
 
+    @Transactional
     public boolean deleteSensorData(Long id) {
-        if (sensorDataRepository.existsById(id)) {
-            sensorDataRepository.deleteById(id);
-            return true;
-        }
-        return false;
-    }
-
-    public List<SensorData> getSensorDataByBusId(Long busId) {
-        return sensorDataRepository.findByBusId(busId);
+        return sensorDataRepository.findById(id)
+                .map(sensorData -> {
+                    sensorDataRepository.delete(sensorData);
+                    eventPublisher.publishEvent(new SensorReadingsEditedEvent(List.of(SensorReading.of(sensorData))));
+                    return true;
+                })
+                .orElse(false);
     }
 
     public void addFileToSensorData(Long sensorDataId, String filePath) {
@@ -65,10 +169,25 @@ public class SensorService {
         sensorDataRepository.save(sensorData);
     }
 
+    // Пороги для строк импорта уже проверены при разборе, здесь добавляется только детектор;
+    // базовые линии детектор обновит сам после фиксации транзакции
+    private List<SensorReading> markAnomalies(List<SensorReading> readings) {
+        boolean[] deviates = anomalyDetector.evaluate(readings);
+        List<SensorReading> marked = new ArrayList<>(readings.size());
+        for (int i = 0; i < readings.size(); i++) {
+            SensorReading reading = readings.get(i);
+            marked.add(deviates[i] && !reading.anomaly()
+                    ? new SensorReading(reading.busId(), reading.sensorType(), reading.timestamp(), reading.value(), true)
+                    : reading);
+        }
+        return marked;
+    }
+
     public boolean checkForAnomaly(SensorData sensorData) {
-    SensorType type = sensorData.getSensorType();
-    Double value = sensorData.getValue();
+        return checkForAnomaly(sensorData.getSensorType(), sensorData.getValue());
+    }
 
+    public boolean checkForAnomaly(SensorType type, double value) {
     switch (type) {
         case ENGINE_TEMP:
             return value > 100.0 || value < 60.0;
@@ -0,0 +1,141 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.dto.BusSensorSnapshot;
+import com.example.demo.dto.SensorLatestValue;
+import com.example.demo.event.SensorReading;
+import com.example.demo.event.SensorReadingsEditedEvent;
+import com.example.demo.event.SensorReadingsRecordedEvent;
+import com.example.demo.model.SensorType;
+import com.example.demo.repository.SensorDataBatchRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Последние показания всех датчиков парка в памяти.
+ * На автобус - массив ячеек по типам датчика, ячейка меняется через CAS
+ * только на более свежее показание, поэтому чтение и запись идут без блокировок.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorSnapshotService {
+
+    private static final SensorType[] TYPES = SensorType.values();
+
+    private final SensorDataBatchRepository sensorDataBatchRepository;
+
+    private final Map<Long, AtomicReferenceArray<SensorLatestValue>> latest = new ConcurrentHashMap<>();
+
+    /**
+     * Начальное заполнение последними показаниями из sensor_data
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        List<SensorReading> readings = sensorDataBatchRepository.findLatestPerBusAndType();
+        readings.forEach(this::update);
+        log.info("Sensor snapshot loaded: {} buses, {} readings", latest.size(), readings.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSensorReadingsRecorded(SensorReadingsRecordedEvent event) {
+        event.readings().forEach(this::update);
+    }
+
+    /**
+     * Изменение или удаление могло убрать последнее показание - затронутые ячейки перечитываются из БД
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSensorReadingsEdited(SensorReadingsEditedEvent event) {
+        // Автобус -> тип -> прежние и новые значения затронутых строк
+        Map<Long, Map<SensorType, Set<SensorLatestValue>>> affected = new HashMap<>();
+        for (SensorReading reading : event.readings()) {
+            if (reading.busId() != null && reading.sensorType() != null) {
+                affected.computeIfAbsent(reading.busId(), id -> new EnumMap<>(SensorType.class))
+                        .computeIfAbsent(reading.sensorType(), type -> new HashSet<>())
+                        .add(toValue(reading));
+            }
+        }
+        affected.forEach((busId, types) -> types.forEach((type, edited) -> reload(busId, type, edited)));
+    }
+
+    /**
+     * Последние показания всех автобусов, упорядоченные по ID
+     */
+    public List<BusSensorSnapshot> getFleet() {
+        List<BusSensorSnapshot> result = new ArrayList<>(latest.size());
+        latest.forEach((busId, slots) -> result.add(toSnapshot(busId, slots)));
+        result.sort(Comparator.comparing(BusSensorSnapshot::busId));
+        return result;
+    }
+
+    private void update(SensorReading reading) {
+        if (reading.busId() == null || reading.sensorType() == null || reading.timestamp() == null) {
+            return;
+        }
+        AtomicReferenceArray<SensorLatestValue> slots =
+                latest.computeIfAbsent(reading.busId(), id -> new AtomicReferenceArray<>(TYPES.length));
+        SensorLatestValue candidate = toValue(reading);
+        int slot = reading.sensorType().ordinal();
+        SensorLatestValue current;
+        do {
+            current = slots.get(slot);
+            // Опоздавшие показания (например, импорт старого файла) не затирают более свежие
+            if (current != null && current.timestamp().isAfter(candidate.timestamp())) {
+                return;
+            }
+        } while (!slots.compareAndSet(slot, current, candidate));
+    }
+
+    /**
+     * Замена ячейки перечитанным значением через CAS. Текущее значение остается, если оно свежее
+     * перечитанного и не входит в измененные строки: его записали после чтения из БД
+     */
+    private void reload(Long busId, SensorType type, Set<SensorLatestValue> edited) {
+        SensorLatestValue reloaded = sensorDataBatchRepository.findLatest(busId, type)
+                .map(SensorSnapshotService::toValue)
+                .orElse(null);
+        AtomicReferenceArray<SensorLatestValue> slots =
+                latest.computeIfAbsent(busId, id -> new AtomicReferenceArray<>(TYPES.length));
+        int slot = type.ordinal();
+        SensorLatestValue current;
+        do {
+            current = slots.get(slot);
+            if (current != null && !edited.contains(current)
+                    && (reloaded == null || current.timestamp().isAfter(reloaded.timestamp()))) {
+                return;
+            }
+        } while (!slots.compareAndSet(slot, current, reloaded));
+    }
+
+    private static SensorLatestValue toValue(SensorReading reading) {
+        return new SensorLatestValue(reading.value(), reading.timestamp(), reading.anomaly());
+    }
+
+    private static BusSensorSnapshot toSnapshot(Long busId, AtomicReferenceArray<SensorLatestValue> slots) {
+        Map<SensorType, SensorLatestValue> readings = new EnumMap<>(SensorType.class);
+        for (SensorType type : TYPES) {
+            SensorLatestValue value = slots.get(type.ordinal());
+            if (value != null) {
+                readings.put(type, value);
+            }
+        }
+        return new BusSensorSnapshot(busId, readings);
+    }
+}
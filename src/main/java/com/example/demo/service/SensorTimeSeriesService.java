@@ -0,0 +1,248 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dto.SensorRollupRow;
+import com.example.demo.dto.SensorSeries;
+import com.example.demo.enums.SeriesResolution;
+import com.example.demo.event.SensorReading;
+import com.example.demo.event.SensorReadingsRecordedEvent;
+import com.example.demo.exception.AppException;
+import com.example.demo.model.SensorType;
+import com.example.demo.repository.SensorTimeSeriesRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Режим временных рядов для показаний датчиков (sensor.timeseries.enabled).
+ * Каждое показание пишется в дневную секцию sensor_readings и в агрегаты
+ * по минутам и часам в той же транзакции, что и sensor_data.
+ * sensor_data остается основной записью для CRUD API (ID, правка, вложения, постраничная выдача)
+ * и по умолчанию не удаляется; удаление старых строк включается record-retention-days > 0.
+ * Секции создаются только при запуске и по расписанию, старые секции и минутные агрегаты удаляются там же.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorTimeSeriesService {
+
+    private final SensorTimeSeriesRepository timeSeriesRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${sensor.timeseries.enabled:false}")
+    private boolean enabled;
+
+    @Value("${sensor.timeseries.raw-retention-days:30}")
+    private int rawRetentionDays;
+
+    @Value("${sensor.timeseries.minute-retention-days:90}")
+    private int minuteRetentionDays;
+
+    @Value("${sensor.timeseries.precreate-days:3}")
+    private int precreateDays;
+
+    @Value("${sensor.timeseries.max-points:1000}")
+    private int defaultMaxPoints;
+
+    // Срок хранения строк sensor_data вместе со ссылками на вложения; 0 - не удалять
+    @Value("${sensor.timeseries.record-retention-days:0}")
+    private int recordRetentionDays;
+
+    @Value("${sensor.timeseries.purge-batch-size:5000}")
+    private int purgeBatchSize;
+
+    // Дни, для которых секция сырых показаний уже создана
+    private final Set<LocalDate> partitions = ConcurrentHashMap.newKeySet();
+
+    // DDL обслуживания выполняется в собственной транзакции, вне транзакций записи
+    private TransactionTemplate ddlTransaction;
+
+    // Отброшенные из sensor_readings показания без секции (дата вне окна хранения)
+    private final AtomicLong outOfWindow = new AtomicLong();
+
+    private record RollupKey(Long busId, SensorType sensorType, LocalDateTime bucket) {}
+
+    // Единый порядок строк агрегатов: параллельные пакеты блокируют ключи в одной последовательности
+    private static final Comparator<SensorRollupRow> ROLLUP_ORDER = Comparator
+            .comparing(SensorRollupRow::busId)
+            .thenComparing(SensorRollupRow::sensorType)
+            .thenComparing(SensorRollupRow::bucket);
+
+    @PostConstruct
+    public void init() {
+        ddlTransaction = new TransactionTemplate(transactionManager);
+        ddlTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        ddlTransaction.executeWithoutResult(status -> timeSeriesRepository.createSchema());
+        partitions.addAll(timeSeriesRepository.findPartitionDays());
+        maintain();
+        log.info("Sensor time-series storage ready: {} daily partitions", partitions.size());
+    }
+
+    /**
+     * Создание секций на все дни окна хранения и ближайшие дни,
+     * удаление секций и агрегатов старше срока хранения (и sensor_data, если включено)
+     */
+    @Scheduled(cron = "${sensor.timeseries.maintenance-cron:0 15 0 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate rawCutoff = today.minusDays(rawRetentionDays);
+        for (LocalDate day = rawCutoff; !day.isAfter(today.plusDays(precreateDays)); day = day.plusDays(1)) {
+            ensurePartition(day);
+        }
+
+        int dropped = 0;
+        for (LocalDate day : timeSeriesRepository.findPartitionDays()) {
+            if (day.isBefore(rawCutoff)) {
+                timeSeriesRepository.dropPartition(day);
+                partitions.remove(day);
+                dropped++;
+            }
+        }
+        int minuteRows = timeSeriesRepository.deleteRollupsBefore(SeriesResolution.MINUTE,
+                today.minusDays(minuteRetentionDays).atStartOfDay());
+
+        long records = 0;
+        if (recordRetentionDays > 0) {
+            LocalDateTime recordCutoff = today.minusDays(recordRetentionDays).atStartOfDay();
+            int batch;
+            do {
+                batch = timeSeriesRepository.deleteSensorDataBefore(recordCutoff, purgeBatchSize);
+                records += batch;
+            } while (batch >= purgeBatchSize);
+        }
+        log.info("Sensor time-series maintenance: {} partitions dropped, {} minute rollups purged, " +
+                "{} sensor_data rows purged, {} out-of-window readings skipped since last run",
+                dropped, minuteRows, records, outOfWindow.getAndSet(0));
+    }
+
+    @EventListener
+    public void onSensorReadingsRecorded(SensorReadingsRecordedEvent event) {
+        if (!enabled || event.readings().isEmpty()) {
+            return;
+        }
+        List<SensorReading> raw = new ArrayList<>(event.readings().size());
+        Map<RollupKey, SensorRollupRow> minutes = new HashMap<>();
+        Map<RollupKey, SensorRollupRow> hours = new HashMap<>();
+
+        for (SensorReading reading : event.readings()) {
+            // Секции здесь не создаются: DDL на родительской таблице ждал бы всех писателей.
+            // Показания за дни без секции (старше срока хранения или из далекого будущего)
+            // попадают только в агрегаты
+            if (partitions.contains(reading.timestamp().toLocalDate())) {
+                raw.add(reading);
+            } else {
+                outOfWindow.incrementAndGet();
+            }
+            accumulate(minutes, reading, reading.timestamp().truncatedTo(ChronoUnit.MINUTES));
+            accumulate(hours, reading, reading.timestamp().truncatedTo(ChronoUnit.HOURS));
+        }
+
+        timeSeriesRepository.insertReadings(raw);
+        timeSeriesRepository.upsertRollups(SeriesResolution.MINUTE, sorted(minutes));
+        timeSeriesRepository.upsertRollups(SeriesResolution.HOUR, sorted(hours));
+    }
+
+    /**
+     * Ряд показаний за [from, to) не более чем из maxPoints точек.
+     * Берется самый грубый уровень хранения, шаг которого не больше требуемого
+     * и данные которого еще хранятся за весь период.
+     */
+    public SensorSeries getSeries(Long busId, SensorType type, LocalDateTime from, LocalDateTime to,
+            Integer maxPoints) {
+        if (!enabled) {
+            throw new AppException(HttpStatus.SERVICE_UNAVAILABLE, "Sensor time-series storage is disabled");
+        }
+        if (!to.isAfter(from)) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "'to' must be after 'from'");
+        }
+        int points = maxPoints != null && maxPoints > 0 ? maxPoints : defaultMaxPoints;
+        long rangeSeconds = Duration.between(from, to).toSeconds();
+        long requiredStep = Math.max(1, (rangeSeconds + points - 1) / points);
+
+        SeriesResolution source = chooseSource(from, requiredStep);
+        long bucketSeconds = Math.max(1, source.getBucket().toSeconds());
+        // Шаг кратен интервалу источника, чтобы агрегаты не делились между точками
+        long stepSeconds = Math.max(bucketSeconds,
+                (requiredStep + bucketSeconds - 1) / bucketSeconds * bucketSeconds);
+
+        return new SensorSeries(busId, type, source, stepSeconds,
+                timeSeriesRepository.findSeries(source, busId, type, from, to, stepSeconds));
+    }
+
+    private SeriesResolution chooseSource(LocalDateTime from, long requiredStep) {
+        LocalDate today = LocalDate.now();
+        boolean rawAvailable = !from.toLocalDate().isBefore(today.minusDays(rawRetentionDays));
+        boolean minuteAvailable = !from.toLocalDate().isBefore(today.minusDays(minuteRetentionDays));
+
+        if (requiredStep >= SeriesResolution.HOUR.getBucket().toSeconds()) {
+            return SeriesResolution.HOUR;
+        }
+        if (requiredStep >= SeriesResolution.MINUTE.getBucket().toSeconds() && minuteAvailable) {
+            return SeriesResolution.MINUTE;
+        }
+        if (rawAvailable) {
+            return SeriesResolution.RAW;
+        }
+        // Детальные данные за период уже удалены - отдаем самый точный из оставшихся уровней
+        return minuteAvailable ? SeriesResolution.MINUTE : SeriesResolution.HOUR;
+    }
+
+    private void ensurePartition(LocalDate day) {
+        if (partitions.contains(day)) {
+            return;
+        }
+        ddlTransaction.executeWithoutResult(status -> timeSeriesRepository.createPartition(day));
+        partitions.add(day);
+    }
+
+    private static List<SensorRollupRow> sorted(Map<RollupKey, SensorRollupRow> rollups) {
+        List<SensorRollupRow> rows = new ArrayList<>(rollups.values());
+        rows.sort(ROLLUP_ORDER);
+        return rows;
+    }
+
+    private static void accumulate(Map<RollupKey, SensorRollupRow> rollups, SensorReading reading,
+            LocalDateTime bucket) {
+        rollups.merge(new RollupKey(reading.busId(), reading.sensorType(), bucket),
+                new SensorRollupRow(reading.busId(), reading.sensorType(), bucket,
+                        reading.value(), reading.value(), reading.value(), 1),
+                (current, added) -> current.merge(reading.value()));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Локальная заглушка без сети (telegram.transport=stub): сообщения пишутся в лог
+ * и хранятся в памяти. Задержка latency-ms имитирует обращение к API.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "telegram.transport", havingValue = "stub")
+public class StubNotificationTransport implements NotificationTransport {
+
+    public record SentMessage(String chatId, String text, boolean markdown) {}
+
+    @Value("${notification.stub.latency-ms:0}")
+    private long latencyMs;
+
+    @Value("${notification.stub.history-size:100}")
+    private int historySize;
+
+    private final Deque<SentMessage> sent = new ArrayDeque<>();
+
+    @Override
+    public void send(String chatId, String text, boolean markdown) {
+        if (latencyMs > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (sent) {
+            if (sent.size() >= historySize) {
+                sent.removeFirst();
+            }
+            sent.addLast(new SentMessage(chatId, text, markdown));
+        }
+        log.info("Stub notification to {}: {}", chatId, text);
+    }
+
+    /**
+     * Последние отправленные сообщения, от старых к новым
+     */
+    public List<SentMessage> getSent() {
+        synchronized (sent) {
+            return List.copyOf(sent);
+        }
+    }
+}
@@ -10,14 +10,15 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class TelegramLoggingService {
     
-    private final TelegramBotService telegramBotService;
+    // Telegram, файл или память - в зависимости от notification.sink
+    private final NotificationSink notificationSink;
     
     /**
      * Логирование успешных операций
      */
     public void logSuccess(String operation, String details) {
         String message = String.format("✅ %s\n📝 %s", operation, details);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.info("Telegram log (Success): {} - {}", operation, details);
     }
     
@@ -26,7 +27,7 @@ public class TelegramLoggingService {
      */
     public void logError(String operation, String error) {
         String message = String.format("❌ %s\n💥 Ошибка: %s", operation, error);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.error("Telegram log (Error): {} - {}", operation, error);
     }
     
@@ -35,7 +36,7 @@ public class TelegramLoggingService {
      */
     public void logWarning(String operation, String warning) {
         String message = String.format("⚠️ %s\n📢 Предупреждение: %s", operation, warning);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.warn("Telegram log (Warning): {} - {}", operation, warning);
     }
     
@@ -44,7 +45,7 @@ public class TelegramLoggingService {
      */
     public void logInfo(String operation, String info) {
         String message = String.format("ℹ️ %s\n📋 %s", operation, info);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.info("Telegram log (Info): {} - {}", operation, info);
     }
     
@@ -53,7 +54,7 @@ public class TelegramLoggingService {
      */
     public void logCreate(String entity, Long id, String details) {
         String message = String.format("🆕 Создан %s #%d\n%s", entity, id, details);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.info("Telegram log (Create): {} #{} - {}", entity, id, details);
     }
     
@@ -62,7 +63,7 @@ public class TelegramLoggingService {
      */
     public void logUpdate(String entity, Long id, String details) {
         String message = String.format("✏️ Обновлен %s #%d\n%s", entity, id, details);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.info("Telegram log (Update): {} #{} - {}", entity, id, details);
     }
     
@@ -71,7 +72,7 @@ public class TelegramLoggingService {
      */
     public void logDelete(String entity, Long id) {
         String message = String.format("🗑️ Удален %s #%d", entity, id);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.info("Telegram log (Delete): {} #{}", entity, id);
     }
     
@@ -83,7 +84,7 @@ public class TelegramLoggingService {
         String status = success ? "успешный" : "неудачный";
         String message = String.format("%s Вход пользователя: %s\nСтатус: %s", 
             emoji, username, status);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.info("Telegram log (Login): {} - {}", username, status);
     }
     
@@ -95,7 +96,7 @@ public class TelegramLoggingService {
         String status = success ? "успешно" : "с ошибкой";
         String message = String.format("%s %s файла: %s\nСтатус: %s", 
             emoji, operation, filename, status);
-        telegramBotService.sendMessage(message);
+        notificationSink.publish(message);
         log.info("Telegram log (File): {} {} - {}", operation, filename, status);
     }
 }
\ No newline at end of file
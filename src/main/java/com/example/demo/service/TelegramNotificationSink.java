@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Уведомления в чат Telegram через очередь NotificationDispatcher (notification.sink=telegram, по умолчанию)
+ */
+@Component
+@ConditionalOnProperty(name = "notification.sink", havingValue = "telegram", matchIfMissing = true)
+@RequiredArgsConstructor
+public class TelegramNotificationSink implements NotificationSink {
+
+    private final TelegramBotService telegramBotService;
+
+    @Override
+    public void publish(String message) {
+        telegramBotService.sendMessage(message);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Отправка уведомлений через Telegram Bot API (telegram.transport=bot, по умолчанию)
+ */
+@Component
+@ConditionalOnProperty(name = "telegram.transport", havingValue = "bot", matchIfMissing = true)
+public class TelegramNotificationTransport implements NotificationTransport {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Value("${telegram.bot.token}")
+    private String botToken;
+
+    private DefaultAbsSender sender;
+
+    @PostConstruct
+    public void init() {
+        sender = new DefaultAbsSender(new DefaultBotOptions(), botToken) {};
+    }
+
+    @Override
+    public void send(String chatId, String text, boolean markdown) throws IOException {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        message.enableMarkdown(markdown);
+        try {
+            sender.execute(message);
+        } catch (TelegramApiRequestException e) {
+            Integer code = e.getErrorCode();
+            if (code != null && code == TOO_MANY_REQUESTS && e.getParameters() != null
+                    && e.getParameters().getRetryAfter() != null) {
+                throw new RateLimitedException(e.getParameters().getRetryAfter(), e.getMessage());
+            }
+            throw new IOException(e.getMessage(), e);
+        } catch (TelegramApiException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -1,20 +1,26 @@
 package com.example.demo.service.impl;
 
-import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.dto.LoginRequest;
@@ -22,14 +28,20 @@ import com.example.demo.dto.LoginResponse;
 import com.example.demo.dto.UserLoggedDto;
 import com.example.demo.exception.AppException;
 import com.example.demo.jwt.JwtTokenProviderImpl;
+import com.example.demo.jwt.ParsedToken;
+import com.example.demo.jwt.RoleAuthenticationToken;
+import com.example.demo.jwt.RoleAuthorityRegistry;
+import com.example.demo.jwt.TokenRevocationService;
 import com.example.demo.mapper.UserMapper;
 import com.example.demo.model.Token;
 import com.example.demo.model.User;
-import com.example.demo.repository.TokenRepository;
+import com.example.demo.repository.TokenBatchRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.service.AuthService;
 import com.example.demo.util.CookieUtil;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 
 @Service
@@ -44,90 +56,94 @@ public class AuthServiceImpl implements AuthService {
     @Value("${jwt.refresh.duration.second}")
     private long refreshTokenDurationSecond;
     private final UserRepository userRepository;
-    private final TokenRepository tokenRepository;
     private final JwtTokenProviderImpl tokenProvider;
     private final CookieUtil cookieUtil;
-    private final AuthenticationManager authenticationManager;
+    private final TokenBatchRepository tokenBatchRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TokenRevocationService revocationService;
+    private final RoleAuthorityRegistry authorityRegistry;
+
+    // Пул проверки паролей при входе
+    @Value("${auth.login.threads:4}")
+    private int loginThreads;
+    @Value("${auth.login.queue-capacity:100}")
+    private int loginQueueCapacity;
+
+    private ThreadPoolExecutor loginExecutor;
+    // Хэш для выравнивания времени ответа при неизвестном логине
+    private String dummyPasswordHash;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        loginExecutor = new ThreadPoolExecutor(loginThreads, loginThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(loginQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "auth-login-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        dummyPasswordHash = passwordEncoder.encode(UUID.randomUUID().toString());
+    }
+
+    @PreDestroy
+    public void stop() {
+        loginExecutor.shutdownNow();
+    }
+
+    /**
+     * Вход выполняется в отдельном ограниченном пуле: BCrypt занимает процессор
+     * на десятки миллисекунд и не должен занимать потоки Tomcat.
+     * Переполненная очередь отвечает 503.
+     */
     @Override
-    public ResponseEntity<LoginResponse> login(LoginRequest loginRequest, String accessToken, String refreshToken) {
-        Authentication authentication = 
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.username(), loginRequest.password()
-                )
-        );
-        
-        String username = loginRequest.username();
-        User user = userRepository.findByUsername(username).orElseThrow(
-                () -> new AppException(HttpStatus.NOT_FOUND, "User not found")
-        );
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(LoginRequest loginRequest) {
+        try {
+            return CompletableFuture.supplyAsync(() -> doLogin(loginRequest), loginExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new AppException(HttpStatus.SERVICE_UNAVAILABLE, "Too many login attempts in progress");
+        }
+    }
 
-        boolean accessTokenValid = tokenProvider.validateToken(accessToken);
-        boolean refreshTokenValid = tokenProvider.validateToken(refreshToken);
+    private ResponseEntity<LoginResponse> doLogin(LoginRequest loginRequest) {
+        long authorityGeneration = authorityRegistry.generation();
+        // Пользователь, роль и права - одним запросом
+        User user = userRepository.findWithPermissionsByUsername(loginRequest.username()).orElse(null);
+        // Для несуществующего пользователя хэш все равно проверяется, чтобы время ответа не выдавало логины
+        String passwordHash = user != null ? user.getPassword() : dummyPasswordHash;
+        boolean matches = loginRequest.password() != null
+                && passwordEncoder.matches(loginRequest.password(), passwordHash);
+        if (user == null || !matches) {
+            throw new AppException(HttpStatus.UNAUTHORIZED, "Invalid username or password");
+        }
 
         HttpHeaders responseHeaders = new HttpHeaders();
-        Token newAccessToken, newRefreshToken;
 
+        // Вход отзывает все прежние токены пользователя, поэтому всегда выдается новая пара
         revokeAllTokenOfUser(user);
 
-        if(!accessTokenValid && !refreshTokenValid) {
-            newAccessToken = tokenProvider.generateAccessToken(
-                    Map.of("role", user.getRole().getAuthority()),
-                    accessTokenDurationMinute,
-                    ChronoUnit.MINUTES,
-                    user
-            );
-
-            newRefreshToken = tokenProvider.generateRefreshToken(
-                    refreshTokenDurationDay,
-                    ChronoUnit.DAYS,
-                    user
-            );
-
-            newAccessToken.setUser(user);
-            newRefreshToken.setUser(user);
-            // save tokens in db
-            tokenRepository.saveAll(List.of(newAccessToken, newRefreshToken));
-            addAccessTokenCookie(responseHeaders, newAccessToken);
-            addRefreshTokenCookie(responseHeaders, newRefreshToken);
-        }
-
-        if(!accessTokenValid && refreshTokenValid) {
-            newAccessToken = tokenProvider.generateAccessToken(
-                    Map.of("role", user.getRole().getAuthority()),
-                    accessTokenDurationMinute,
-                    ChronoUnit.MINUTES,
-                    user
-            );
+        Token newAccessToken = tokenProvider.generateAccessToken(
+                Map.of("role", user.getRole().getAuthority()),
+                accessTokenDurationMinute,
+                ChronoUnit.MINUTES,
+                user
+        );
 
-            addAccessTokenCookie(responseHeaders, newAccessToken);
-        }
+        Token newRefreshToken = tokenProvider.generateRefreshToken(
+                refreshTokenDurationDay,
+                ChronoUnit.DAYS,
+                user
+        );
 
-        if(accessTokenValid && refreshTokenValid) {
-            newAccessToken = tokenProvider.generateAccessToken(
-                    Map.of("role", user.getRole().getAuthority()),
-                    accessTokenDurationMinute,
-                    ChronoUnit.MINUTES,
-                    user
-            );
-
-            newRefreshToken = tokenProvider.generateRefreshToken(
-                    refreshTokenDurationDay,
-                    ChronoUnit.DAYS,
-                    user
-            );
-
-            newAccessToken.setUser(user);
-            newRefreshToken.setUser(user);
-            // save tokens in db
-            tokenRepository.saveAll(List.of(newAccessToken, newRefreshToken));
-
-            addAccessTokenCookie(responseHeaders, newAccessToken);
-            addRefreshTokenCookie(responseHeaders, newRefreshToken);
-        }
+        newAccessToken.setUser(user);
+        newRefreshToken.setUser(user);
+        // save tokens in db
+        tokenBatchRepository.insertAll(List.of(newAccessToken, newRefreshToken));
+        addAccessTokenCookie(responseHeaders, newAccessToken);
+        addRefreshTokenCookie(responseHeaders, newRefreshToken);
 
-        SecurityContextHolder.getContext()
-        .setAuthentication(authentication);
+        eventPublisher.publishEvent(new AuthenticationSuccessEvent(
+                new RoleAuthenticationToken(user, authorityRegistry.refresh(user.getRole(), authorityGeneration))));
 
         LoginResponse loginResponse = 
         new LoginResponse(true, user.getRole().getName());
@@ -136,12 +152,13 @@ public class AuthServiceImpl implements AuthService {
     }
     @Override
     public ResponseEntity<LoginResponse> refresh(String refreshToken) {
-        boolean refreshTokenValid = tokenProvider.validateToken(refreshToken);
+        ParsedToken parsedRefreshToken = tokenProvider.parseToken(refreshToken);
 
-        if(!refreshTokenValid)
+        if(!parsedRefreshToken.valid()
+                || revocationService.isRevoked(parsedRefreshToken.subject(), parsedRefreshToken.issuedAt()))
             throw new AppException(HttpStatus.BAD_REQUEST, "Refresh token is invalid");
 
-        String username = tokenProvider.getUsernameFromToken(refreshToken);
+        String username = parsedRefreshToken.subject();
         User user = userRepository.findByUsername(username).orElseThrow(
                 () -> new AppException(HttpStatus.NOT_FOUND, "User not found")
         );
@@ -201,16 +218,6 @@ public class AuthServiceImpl implements AuthService {
         httpHeaders.add(HttpHeaders.SET_COOKIE, cookieUtil.createRefreshTokenCookie(token.getValue(), refreshTokenDurationSecond).toString());
     }
     private void revokeAllTokenOfUser(User user) {
-        // get all user tokens
-        Set<Token> tokens = user.getTokens();
-
-        tokens.forEach(token -> {
-            if(token.getExpiryDate().isBefore(LocalDateTime.now()))
-                tokenRepository.delete(token);
-            else if(!token.isDisabled()) {
-                token.setDisabled(true);
-                tokenRepository.save(token);
-            }
-        });
+        revocationService.revokeAll(user);
     }
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Service;
 import com.example.demo.dto.UserDto;
 import com.example.demo.exception.AppException;
 import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.jwt.AuthenticatedTokenCache;
 import com.example.demo.mapper.UserMapper;
 import com.example.demo.model.Role;
 import com.example.demo.model.User;
@@ -24,6 +25,7 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AuthenticatedTokenCache tokenCache;
 
     @Override
     public List<UserDto> getUsers() {
@@ -70,11 +72,15 @@ public class UserServiceImpl implements UserService {
                 () -> new AppException(HttpStatus.NOT_FOUND, "Role not found")
         );
 
+        String previousUsername = user.getUsername();
         user.setUsername(userDto.username());
         user.setPassword(passwordEncoder.encode(userDto.password()));
         user.setRole(role);
 
-        return UserMapper.userToUserDto(userRepository.save(user));
+        UserDto updated = UserMapper.userToUserDto(userRepository.save(user));
+        // Роль и права в кэше токенов больше не актуальны
+        tokenCache.invalidateUser(previousUsername);
+        return updated;
     }
     @Override
     public String deleteUser(Long userId) {
@@ -84,6 +90,7 @@ public class UserServiceImpl implements UserService {
         );
 
         userRepository.delete(user);
+        tokenCache.invalidateUser(user.getUsername());
 
         return String.format("User with %d deleted successfully", userId);
     }
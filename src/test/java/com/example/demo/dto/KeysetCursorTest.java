@@ -0,0 +1,63 @@
+package com.example.demo.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.example.demo.exception.AppException;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2026, 3, 1, 8, 15, 30, 123_456_000), 42L);
+
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void roundTripKeepsWholeSecondsAndLargeIds() {
+        // LocalDateTime.toString опускает нулевые секунды - разбор должен это принимать
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2026, 3, 1, 8, 0), Long.MAX_VALUE - 1);
+
+        assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String token = new KeysetCursor(LocalDateTime.of(2026, 3, 1, 8, 15, 30), 1L).encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void emptyTokenIsFirstPage() {
+        assertSame(KeysetCursor.FIRST, KeysetCursor.decode(null));
+        assertSame(KeysetCursor.FIRST, KeysetCursor.decode(" "));
+        assertTrue(KeysetCursor.FIRST.isFirst());
+        assertTrue(KeysetCursor.decode(KeysetCursor.FIRST.encode()).isFirst());
+        assertFalse(new KeysetCursor(LocalDateTime.of(2026, 3, 1, 8, 0), 1L).isFirst());
+    }
+
+    @Test
+    void invalidTokenIsBadRequest() {
+        String noSeparator = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2026-03-01T08:00".getBytes(StandardCharsets.UTF_8));
+        String badId = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2026-03-01T08:00|x".getBytes(StandardCharsets.UTF_8));
+
+        for (String token : new String[] {"not a cursor!", noSeparator, badId}) {
+            AppException e = assertThrows(AppException.class, () -> KeysetCursor.decode(token));
+            assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        }
+    }
+}
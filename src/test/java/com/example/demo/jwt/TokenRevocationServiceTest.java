@@ -0,0 +1,76 @@
+package com.example.demo.jwt;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.dto.UserTokensNotBefore;
+import com.example.demo.model.User;
+import com.example.demo.repository.TokenRepository;
+import com.example.demo.repository.UserRepository;
+
+class TokenRevocationServiceTest {
+
+    private static final LocalDateTime BOUNDARY = LocalDateTime.of(2026, 3, 1, 8, 0, 0);
+
+    private final TokenRepository tokenRepository = mock(TokenRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AuthenticatedTokenCache tokenCache = mock(AuthenticatedTokenCache.class);
+    private final TokenRevocationService service =
+            new TokenRevocationService(tokenRepository, userRepository, tokenCache);
+
+    @BeforeEach
+    void loadBoundaries() {
+        when(userRepository.findTokensNotBefore()).thenReturn(List.of(new UserTokensNotBefore("alice", BOUNDARY)));
+        service.init();
+    }
+
+    @Test
+    void tokenIssuedBeforeBoundaryIsRevoked() {
+        assertTrue(service.isRevoked("alice", BOUNDARY.minusSeconds(1)));
+        assertTrue(service.isRevoked("alice", BOUNDARY.minusNanos(1)));
+    }
+
+    @Test
+    void tokenIssuedAtOrAfterBoundaryIsValid() {
+        assertFalse(service.isRevoked("alice", BOUNDARY));
+        assertFalse(service.isRevoked("alice", BOUNDARY.plusSeconds(1)));
+    }
+
+    @Test
+    void tokenWithoutIssueTimeIsRevokedOnlyWhenBoundaryExists() {
+        assertTrue(service.isRevoked("alice", null));
+        assertFalse(service.isRevoked("bob", null));
+    }
+
+    @Test
+    void userWithoutBoundaryIsNeverRevoked() {
+        assertFalse(service.isRevoked("bob", BOUNDARY.minusYears(1)));
+    }
+
+    @Test
+    void revokeAllKeepsTokensIssuedInTheSameSecond() {
+        User user = new User();
+        user.setId(7L);
+        user.setUsername("bob");
+
+        LocalDateTime before = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        service.revokeAll(user);
+        LocalDateTime after = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        // iat в JWT округлен до секунды: токен, выпущенный в секунду отзыва и позже, действителен
+        assertFalse(service.isRevoked("bob", after));
+        assertTrue(service.isRevoked("bob", before.minusSeconds(1)));
+        verify(tokenCache).invalidateUser("bob");
+        verify(tokenRepository).disableAllByUserId(7L);
+    }
+}
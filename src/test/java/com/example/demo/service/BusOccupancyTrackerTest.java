@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.dto.BusPassengerStats;
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.repository.PassengerCountRepository;
+import com.example.demo.repository.PassengerRollupBatchRepository;
+
+class BusOccupancyTrackerTest {
+
+    private static final long BUS = 10L;
+
+    private final PassengerCountRepository passengerCountRepository = mock(PassengerCountRepository.class);
+    private final PassengerRollupBatchRepository rollupBatchRepository = mock(PassengerRollupBatchRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final BusOccupancyTracker tracker = new BusOccupancyTracker(
+            passengerCountRepository, mock(BusService.class), rollupBatchRepository, transactionManager);
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(rollupBatchRepository.currentSnapshot()).thenReturn("100:100:");
+        tracker.init();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void warmStartReplaysOnlyChangesMissingFromSnapshot() {
+        // Транзакция 99 уже в выборке, ее обработчик срабатывает во время заполнения;
+        // транзакция 100 зафиксирована после снимка
+        when(passengerCountRepository.aggregateByBus(any(), any())).thenAnswer(invocation -> {
+            commit(99L, 5);
+            commit(100L, 3);
+            return List.of(new BusPassengerStats(BUS, "model", 1L, 7L, 2L));
+        });
+
+        tracker.onApplicationReady();
+
+        assertEquals(8, tracker.getLoad(BUS));
+    }
+
+    @Test
+    void lateListenerOfSnapshotTransactionIsIgnored() {
+        when(passengerCountRepository.aggregateByBus(any(), any()))
+                .thenReturn(List.of(new BusPassengerStats(BUS, "model", 1L, 7L, 2L)));
+        tracker.onApplicationReady();
+
+        commit(98L, 5);
+        assertEquals(5, tracker.getLoad(BUS));
+
+        commit(101L, 2);
+        assertEquals(7, tracker.getLoad(BUS));
+    }
+
+    // Запись в транзакции transactionId и срабатывание обработчиков после фиксации
+    private void commit(long transactionId, int net) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            when(rollupBatchRepository.currentTransactionId()).thenReturn(transactionId);
+            tracker.onPassengerCountsChanged(new PassengerCountsChangedEvent(List.of(
+                    new PassengerCountDelta(1L, BUS, 2L, LocalDateTime.now(), net, 0, 1))));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class NotificationDispatcherTest {
+
+    private static final int LIMIT = 4096;
+    private static final String CHAT = "chat";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private NotificationDispatcher dispatcher;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void singleMessageKeepsMarkdown() {
+        List<NotificationDispatcher.Digest> digests = NotificationDispatcher.toDigests(null, List.of("*bold*"));
+
+        assertEquals(List.of(new NotificationDispatcher.Digest("*bold*", 1, true)), digests);
+    }
+
+    @Test
+    void severalMessagesGoAsOnePlainDigest() {
+        List<NotificationDispatcher.Digest> digests = NotificationDispatcher.toDigests(null, List.of("a", "b", "c"));
+
+        assertEquals(1, digests.size());
+        NotificationDispatcher.Digest digest = digests.get(0);
+        assertEquals("📦 Сводка: 3 уведомлений\n\na\n\nb\n\nc", digest.text());
+        assertEquals(3, digest.notifications());
+        assertFalse(digest.markdown());
+    }
+
+    @Test
+    void longDigestIsSplitWithinLimit() {
+        List<String> texts = List.of("a".repeat(2000), "b".repeat(2000), "c".repeat(2000), "d".repeat(2000));
+
+        List<NotificationDispatcher.Digest> digests = NotificationDispatcher.toDigests(null, texts);
+
+        assertTrue(digests.size() > 1);
+        int notifications = 0;
+        for (NotificationDispatcher.Digest digest : digests) {
+            assertTrue(digest.text().length() <= LIMIT);
+            assertFalse(digest.markdown());
+            notifications += digest.notifications();
+        }
+        assertEquals(texts.size(), notifications);
+    }
+
+    @Test
+    void oversizedMessageIsTruncatedAsPlainText() {
+        List<NotificationDispatcher.Digest> digests = NotificationDispatcher.toDigests(null, List.of("x".repeat(5000)));
+
+        assertEquals(1, digests.size());
+        NotificationDispatcher.Digest digest = digests.get(0);
+        assertEquals(LIMIT, digest.text().length());
+        assertTrue(digest.text().endsWith("…"));
+        assertEquals(1, digest.notifications());
+        assertFalse(digest.markdown());
+    }
+
+    @Test
+    void oversizedFirstPartFitsNextToHeader() {
+        List<NotificationDispatcher.Digest> digests = NotificationDispatcher.toDigests(null,
+                List.of("x".repeat(5000), "y"));
+
+        for (NotificationDispatcher.Digest digest : digests) {
+            assertTrue(digest.text().length() <= LIMIT);
+        }
+        assertEquals(2, digests.stream().mapToInt(NotificationDispatcher.Digest::notifications).sum());
+    }
+
+    @Test
+    void truncateKeepsSurrogatePairs() {
+        // Эмодзи занимает два char и попадает на границу обрезки
+        String text = "x".repeat(LIMIT - 2) + "😀" + "tail";
+
+        String truncated = NotificationDispatcher.truncate(text, LIMIT);
+
+        assertTrue(truncated.length() <= LIMIT);
+        assertFalse(Character.isHighSurrogate(truncated.charAt(truncated.length() - 2)));
+        assertTrue(truncated.endsWith("…"));
+    }
+
+    @Test
+    void dropSummaryIsNotCountedAsNotification() {
+        String dropSummary = "⚠️ Пропущено уведомлений: 5 (очередь переполнена)";
+
+        List<NotificationDispatcher.Digest> digests = NotificationDispatcher.toDigests(dropSummary, List.of("a"));
+
+        assertEquals(1, digests.size());
+        assertEquals(dropSummary + "\n\na", digests.get(0).text());
+        assertEquals(1, digests.get(0).notifications());
+        assertFalse(digests.get(0).markdown());
+    }
+
+    @Test
+    void overflowReportsDropSummaryAndCountsOnlyDelivered() throws InterruptedException {
+        StubNotificationTransport transport = stub(500);
+        dispatcher = dispatcher(transport, 1, 1, 10, 60);
+
+        assertTrue(dispatcher.submit(CHAT, "first"));
+        // Поток отправки занят первым сообщением: второе ждет в очереди, третье отбрасывается
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertTrue(dispatcher.submit(CHAT, "second"));
+        assertFalse(dispatcher.submit(CHAT, "third"));
+
+        // Счетчик растет после отправки - ждем его, а не истории заглушки
+        await(() -> meterRegistry.counter("notification.delivered").count() == 2);
+        List<StubNotificationTransport.SentMessage> sent = transport.getSent();
+        assertEquals("first", sent.get(0).text());
+        assertTrue(sent.get(0).markdown());
+        assertEquals("⚠️ Пропущено уведомлений: 1 (очередь переполнена)\n\nsecond", sent.get(1).text());
+        assertFalse(sent.get(1).markdown());
+        assertEquals(2, sent.size());
+        assertEquals(1, meterRegistry.counter("notification.dropped").count());
+    }
+
+    @Test
+    void tokenBucketLimitsRateAfterBurst() throws InterruptedException {
+        StubNotificationTransport transport = stub(0);
+        // Два сообщения сразу, далее одно в секунду
+        dispatcher = dispatcher(transport, 2, 10, 10, 60);
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(dispatcher.submit(CHAT, "m" + i));
+        }
+
+        await(() -> transport.getSent().size() == 2);
+        assertTrue(elapsedMillis(started) < 500);
+        await(() -> transport.getSent().size() == 3);
+        assertTrue(elapsedMillis(started) >= 800);
+        await(() -> meterRegistry.counter("notification.delivered").count() == 3);
+    }
+
+    @Test
+    void failedSendIsNotCountedAsDelivered() throws InterruptedException {
+        NotificationTransport failing = (chatId, text, markdown) -> {
+            throw new IOException("unavailable");
+        };
+        dispatcher = dispatcher(failing, 3, 20, 10, 60);
+
+        dispatcher.submit(CHAT, "lost");
+
+        await(() -> meterRegistry.counter("notification.failed").count() == 1);
+        assertEquals(0, meterRegistry.counter("notification.delivered").count());
+    }
+
+    private static StubNotificationTransport stub(long latencyMs) {
+        StubNotificationTransport transport = new StubNotificationTransport();
+        ReflectionTestUtils.setField(transport, "latencyMs", latencyMs);
+        ReflectionTestUtils.setField(transport, "historySize", 100);
+        return transport;
+    }
+
+    private NotificationDispatcher dispatcher(NotificationTransport transport, int burst, int capacity,
+            long lingerMs, int perMinute) {
+        NotificationDispatcher created = new NotificationDispatcher(transport, meterRegistry);
+        ReflectionTestUtils.setField(created, "capacity", capacity);
+        ReflectionTestUtils.setField(created, "maxDigestMessages", 1);
+        ReflectionTestUtils.setField(created, "lingerMs", lingerMs);
+        ReflectionTestUtils.setField(created, "ratePerMinute", perMinute);
+        ReflectionTestUtils.setField(created, "rateBurst", burst);
+        created.start();
+        return created;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in 5 s");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dto.PassengerBatchResult;
+import com.example.demo.dto.PassengerBatchResult.RowError;
+import com.example.demo.dto.PassengerCountCreateDTO;
+import com.example.demo.enums.IngestDurability;
+import com.example.demo.exception.AppException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PassengerIngestBufferTest {
+
+    private final PassengerCountBatchService batchService = mock(PassengerCountBatchService.class);
+    private final CountDownLatch flushAllowed = new CountDownLatch(1);
+    private PassengerIngestBuffer buffer;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        flushAllowed.countDown();
+        if (buffer != null) {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    void enqueueModeAcknowledgesBeforeFlush() throws Exception {
+        blockFlushWith(new PassengerBatchResult(1, 0, List.of()));
+        buffer = buffer(IngestDurability.ENQUEUE, 10, 1);
+
+        CompletableFuture<Void> ack = buffer.submit(row(1L));
+
+        assertTrue(ack.isDone());
+        assertNull(ack.get());
+        flushAllowed.countDown();
+        verify(batchService, timeout(5000)).ingest(any());
+    }
+
+    @Test
+    void flushModeAcknowledgesAfterCommit() throws Exception {
+        blockFlushWith(new PassengerBatchResult(1, 0, List.of()));
+        buffer = buffer(IngestDurability.FLUSH, 10, 1);
+
+        CompletableFuture<Void> ack = buffer.submit(row(1L));
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertFalse(ack.isDone());
+        flushAllowed.countDown();
+        assertNull(ack.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void flushModeReportsRejectedRowToItsRequestOnly() throws Exception {
+        // Вторая строка пакета отклонена при записи (например, неизвестный автобус)
+        blockFlushWith(new PassengerBatchResult(1, 1, List.of(new RowError(2, "invalid data - Bus not found: 2"))));
+        buffer = buffer(IngestDurability.FLUSH, 10, 2);
+
+        CompletableFuture<Void> accepted = buffer.submit(row(1L));
+        CompletableFuture<Void> rejected = buffer.submit(row(2L));
+        flushAllowed.countDown();
+
+        assertNull(accepted.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        AppException cause = assertInstanceOf(AppException.class, e.getCause());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, cause.getStatus());
+        assertEquals("invalid data - Bus not found: 2", cause.getMessage());
+    }
+
+    @Test
+    void flushModeFailsWholeBatchWhenWriteFails() throws Exception {
+        when(batchService.ingest(any())).thenThrow(new IllegalStateException("database unavailable"));
+        buffer = buffer(IngestDurability.FLUSH, 10, 1);
+
+        CompletableFuture<Void> ack = buffer.submit(row(1L));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> ack.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void fullQueueIsServiceUnavailable() throws Exception {
+        blockFlushWith(new PassengerBatchResult(1, 0, List.of()));
+        buffer = buffer(IngestDurability.ENQUEUE, 1, 1);
+
+        buffer.submit(row(1L));
+        // Первая строка уже у потока сброса, вторая занимает единственное место в очереди
+        verify(batchService, timeout(5000)).ingest(any());
+        buffer.submit(row(2L));
+
+        AppException e = assertThrows(AppException.class, () -> buffer.submit(row(3L)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+    }
+
+    @Test
+    void invalidRowIsRejectedBeforeQueueing() {
+        buffer = buffer(IngestDurability.FLUSH, 10, 1);
+        PassengerCountCreateDTO row = row(1L);
+        row.setEntered(-1);
+
+        AppException e = assertThrows(AppException.class, () -> buffer.submit(row));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
+    private void blockFlushWith(PassengerBatchResult result) {
+        when(batchService.ingest(any())).thenAnswer(invocation -> {
+            flushAllowed.await(5, TimeUnit.SECONDS);
+            return result;
+        });
+    }
+
+    private PassengerIngestBuffer buffer(IngestDurability durability, int capacity, int batchSize) {
+        PassengerIngestBuffer created = new PassengerIngestBuffer(batchService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(created, "capacity", capacity);
+        ReflectionTestUtils.setField(created, "batchSize", batchSize);
+        ReflectionTestUtils.setField(created, "flushIntervalMs", 200L);
+        ReflectionTestUtils.setField(created, "offerTimeoutMs", 5L);
+        ReflectionTestUtils.setField(created, "durability", durability);
+        created.start();
+        return created;
+    }
+
+    private static PassengerCountCreateDTO row(Long busId) {
+        return new PassengerCountCreateDTO(busId, 1L, 3, 1, LocalDateTime.of(2026, 3, 1, 8, 0));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.dto.PassengerRollupSlice;
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.repository.PassengerRollupBatchRepository;
+import com.example.demo.repository.PassengerRollupRepository;
+
+class PassengerLoadProfileServiceTest {
+
+    private static final long ROUTE = 1L;
+    private static final long STOP = 2L;
+    // Понедельник, 10:00
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 10, 12, 10, 0);
+
+    private final PassengerRollupRepository rollupRepository = mock(PassengerRollupRepository.class);
+    private final PassengerRollupBatchRepository rollupBatchRepository = mock(PassengerRollupBatchRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final PassengerLoadProfileService service = new PassengerLoadProfileService(
+            rollupRepository, rollupBatchRepository, mock(BusService.class), transactionManager);
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(service, "historyDays", 30);
+        service.init();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void snapshotSeesOnlyTransactionsCommittedBeforeIt() {
+        CommitSnapshot snapshot = CommitSnapshot.parse("100:105:101,103");
+
+        assertEquals(new CommitSnapshot(100, 105, Set.of(101L, 103L)), snapshot);
+        assertTrue(snapshot.sees(99L));
+        assertTrue(snapshot.sees(102L));
+        assertFalse(snapshot.sees(101L));
+        assertFalse(snapshot.sees(105L));
+        assertFalse(snapshot.sees(null));
+        assertEquals(Set.of(), CommitSnapshot.parse("7:7:").inProgress());
+    }
+
+    @Test
+    void rebuildReplaysOnlyChangesMissingFromSnapshot() {
+        when(rollupBatchRepository.currentSnapshot()).thenReturn("100:100:");
+        // Транзакция 99 уже в агрегатах, но ее обработчик после фиксации срабатывает во время перестройки;
+        // транзакция 100 зафиксирована после снимка
+        when(rollupRepository.findSlicesSince(any())).thenAnswer(invocation -> {
+            commit(99L, delta(5, 1));
+            commit(100L, delta(3, 1));
+            return List.of(new PassengerRollupSlice(ROUTE, STOP, HOUR, 5L, 1L));
+        });
+
+        service.rebuild();
+
+        assertEquals(4.0, service.averageLoad(ROUTE, STOP, HOUR));
+    }
+
+    @Test
+    void lateListenerOfSnapshotTransactionIsIgnored() {
+        when(rollupBatchRepository.currentSnapshot()).thenReturn("100:100:");
+        when(rollupRepository.findSlicesSince(any()))
+                .thenReturn(List.of(new PassengerRollupSlice(ROUTE, STOP, HOUR, 5L, 1L)));
+        service.rebuild();
+
+        commit(98L, delta(5, 1));
+        assertEquals(5.0, service.averageLoad(ROUTE, STOP, HOUR));
+
+        commit(101L, delta(1, 1));
+        assertEquals(3.0, service.averageLoad(ROUTE, STOP, HOUR));
+    }
+
+    // Запись в транзакции transactionId и срабатывание обработчиков после фиксации
+    private void commit(long transactionId, PassengerCountDelta delta) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            when(rollupBatchRepository.currentTransactionId()).thenReturn(transactionId);
+            service.onPassengerCountsChanged(new PassengerCountsChangedEvent(List.of(delta)));
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    private static PassengerCountDelta delta(int net, int records) {
+        return new PassengerCountDelta(ROUTE, 10L, STOP, HOUR.plusMinutes(5), net, 0, records);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.example.demo.event.PassengerCountDelta;
+import com.example.demo.event.PassengerCountsChangedEvent;
+import com.example.demo.model.Bus;
+import com.example.demo.model.PassengerCount;
+import com.example.demo.model.PassengerHourlyRollup;
+import com.example.demo.model.Stop;
+import com.example.demo.repository.PassengerRollupBatchRepository;
+
+class PassengerRollupServiceTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    private final PassengerRollupBatchRepository repository = mock(PassengerRollupBatchRepository.class);
+    private final PassengerRollupService service = new PassengerRollupService(repository);
+
+    @Test
+    void deltasOfOneHourAreMergedIntoOneRow() {
+        List<PassengerHourlyRollup> rows = apply(
+                PassengerCountDelta.added(count(1L, 10L, 20L, HOUR.plusMinutes(5), 3, 1)),
+                PassengerCountDelta.added(count(1L, 10L, 20L, HOUR.plusMinutes(40), 4, 2)));
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), HOUR, 1L, 10L, 20L, 7, 3, 2);
+    }
+
+    @Test
+    void updateIsRemovalOfOldValuesPlusNewValues() {
+        PassengerCount before = count(1L, 10L, 20L, HOUR.plusMinutes(5), 5, 2);
+        PassengerCount after = count(1L, 10L, 20L, HOUR.plusMinutes(5), 8, 1);
+
+        List<PassengerHourlyRollup> rows = apply(
+                PassengerCountDelta.removed(before), PassengerCountDelta.added(after));
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), HOUR, 1L, 10L, 20L, 3, -1, 0);
+    }
+
+    @Test
+    void removalKeepsRouteCapturedAtCountTime() {
+        // Автобус перешел на маршрут 2, удаляемая запись считалась на маршруте 1
+        PassengerCount counted = count(1L, 10L, 20L, HOUR.plusMinutes(5), 5, 2);
+
+        List<PassengerHourlyRollup> rows = apply(
+                PassengerCountDelta.removed(counted),
+                PassengerCountDelta.added(count(2L, 10L, 20L, HOUR.plusMinutes(10), 1, 0)));
+
+        assertEquals(2, rows.size());
+        assertRow(rows.get(0), HOUR, 1L, 10L, 20L, -5, -2, -1);
+        assertRow(rows.get(1), HOUR, 2L, 10L, 20L, 1, 0, 1);
+    }
+
+    @Test
+    void rowsAreOrderedByPrimaryKey() {
+        List<PassengerHourlyRollup> rows = apply(
+                PassengerCountDelta.added(count(1L, 11L, 20L, HOUR.plusHours(1), 1, 0)),
+                PassengerCountDelta.added(count(1L, 11L, 21L, HOUR, 1, 0)),
+                PassengerCountDelta.added(count(1L, 10L, 20L, HOUR, 1, 0)),
+                PassengerCountDelta.added(count(null, 12L, 20L, HOUR, 1, 0)));
+
+        assertEquals(4, rows.size());
+        assertRow(rows.get(0), HOUR, null, 12L, 20L, 1, 0, 1);
+        assertRow(rows.get(1), HOUR, 1L, 10L, 20L, 1, 0, 1);
+        assertRow(rows.get(2), HOUR, 1L, 11L, 21L, 1, 0, 1);
+        assertRow(rows.get(3), HOUR.plusHours(1), 1L, 11L, 20L, 1, 0, 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<PassengerHourlyRollup> apply(PassengerCountDelta... deltas) {
+        service.onPassengerCountsChanged(new PassengerCountsChangedEvent(List.of(deltas)));
+        ArgumentCaptor<List<PassengerHourlyRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).applyDeltas(captor.capture());
+        return captor.getValue();
+    }
+
+    private static PassengerCount count(Long routeId, Long busId, Long stopId, LocalDateTime timestamp,
+            int entered, int exited) {
+        Bus bus = new Bus();
+        bus.setId(busId);
+        Stop stop = new Stop();
+        stop.setId(stopId);
+        PassengerCount count = new PassengerCount();
+        count.setRouteId(routeId);
+        count.setBus(bus);
+        count.setStop(stop);
+        count.setTimestamp(timestamp);
+        count.setEntered(entered);
+        count.setExited(exited);
+        return count;
+    }
+
+    private static void assertRow(PassengerHourlyRollup row, LocalDateTime hour, Long routeId, Long busId,
+            Long stopId, long entered, long exited, long records) {
+        assertEquals(hour, row.getBucketHour());
+        assertEquals(routeId, row.getRouteId());
+        assertEquals(busId, row.getBusId());
+        assertEquals(stopId, row.getStopId());
+        assertEquals(entered, row.getEntered());
+        assertEquals(exited, row.getExited());
+        assertEquals(records, row.getRecordCount());
+    }
+}
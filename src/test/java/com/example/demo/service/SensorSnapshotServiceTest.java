@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.dto.SensorLatestValue;
+import com.example.demo.event.SensorReading;
+import com.example.demo.event.SensorReadingsEditedEvent;
+import com.example.demo.event.SensorReadingsRecordedEvent;
+import com.example.demo.model.SensorType;
+import com.example.demo.repository.SensorDataBatchRepository;
+
+class SensorSnapshotServiceTest {
+
+    private static final long BUS = 1L;
+    private static final SensorType TYPE = SensorType.ENGINE_TEMP;
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    private final SensorDataBatchRepository repository = mock(SensorDataBatchRepository.class);
+    private final SensorSnapshotService service = new SensorSnapshotService(repository);
+
+    @Test
+    void deletedLatestReadingIsReplacedByReloadedOne() {
+        SensorReading older = reading(T0, 80);
+        SensorReading deleted = reading(T0.plusMinutes(1), 90);
+        record(deleted);
+        when(repository.findLatest(BUS, TYPE)).thenReturn(Optional.of(older));
+
+        service.onSensorReadingsEdited(new SensorReadingsEditedEvent(List.of(deleted)));
+
+        assertEquals(new SensorLatestValue(80, T0, false), latest());
+    }
+
+    @Test
+    void deletingOnlyReadingClearsSlot() {
+        SensorReading deleted = reading(T0, 90);
+        record(deleted);
+        when(repository.findLatest(BUS, TYPE)).thenReturn(Optional.empty());
+
+        service.onSensorReadingsEdited(new SensorReadingsEditedEvent(List.of(deleted)));
+
+        assertTrue(service.getFleet().get(0).readings().isEmpty());
+    }
+
+    @Test
+    void reloadDoesNotOverwriteNewerReading() {
+        SensorReading edited = reading(T0, 80);
+        SensorReading newer = reading(T0.plusMinutes(5), 95);
+        record(edited);
+        // Перечитанное значение устарело: более свежее показание записано после чтения из БД
+        when(repository.findLatest(BUS, TYPE)).thenAnswer(invocation -> {
+            record(newer);
+            return Optional.of(reading(T0, 85));
+        });
+
+        service.onSensorReadingsEdited(new SensorReadingsEditedEvent(List.of(edited, reading(T0, 85))));
+
+        assertEquals(new SensorLatestValue(95, T0.plusMinutes(5), false), latest());
+    }
+
+    private void record(SensorReading reading) {
+        service.onSensorReadingsRecorded(new SensorReadingsRecordedEvent(List.of(reading)));
+    }
+
+    private SensorLatestValue latest() {
+        return service.getFleet().get(0).readings().get(TYPE);
+    }
+
+    private static SensorReading reading(LocalDateTime timestamp, double value) {
+        return new SensorReading(BUS, TYPE, timestamp, value, false);
+    }
+}